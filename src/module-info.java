@@ -4,7 +4,13 @@
  * @author calestialgem
  */
 module rainfall {
+  requires transitive jdk.jfr;
+  requires jdk.management;
+
   exports rainfall.utility;
   exports rainfall.workspace;
   exports rainfall.launcher;
+  exports rainfall.syntax;
+  exports rainfall.checker;
+  exports rainfall.generator;
 }
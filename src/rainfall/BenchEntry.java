@@ -0,0 +1,44 @@
+package rainfall;
+
+import rainfall.generator.Generator;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Snapshot;
+import rainfall.utility.Bencher;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.workspace.Loader;
+import rainfall.workspace.PhysicalName;
+
+/**
+ * Benchmarks of the compiler, which are run separately from the command-line
+ * interface.
+ *
+ * @author calestialgem
+ */
+class BenchEntry {
+  /**
+   * Runs all the benchmarks for all the components of the compiler.
+   *
+   * @param arguments Arguments provided from the command-line, which are not
+   *                    used.
+   */
+  public static void main(final String[] arguments) {
+    final var bencher = new Bencher();
+    PhysicalName.benchmark(bencher);
+    Result.benchmark(bencher);
+    Metrics.benchmark(bencher);
+    Loader.benchmark(bencher);
+    Lexer.benchmark(bencher);
+    Parser.benchmark(bencher);
+    Snapshot.benchmark(bencher);
+    Generator.benchmark(bencher);
+    CLIEntry.benchmark(bencher);
+  }
+
+  /**
+   * Constructs a benchmark entry, which is not used as the class only has
+   * static members.
+   */
+  private BenchEntry() {}
+}
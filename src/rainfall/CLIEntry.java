@@ -2,17 +2,36 @@ package rainfall;
 
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
+import rainfall.checker.Checker;
+import rainfall.checker.Graph;
+import rainfall.checker.Scheduler;
+import rainfall.generator.Generator;
+import rainfall.generator.Output;
+import rainfall.generator.Stamp;
+import rainfall.generator.Toolchain;
 import rainfall.launcher.Command;
+import rainfall.launcher.Daemon;
 import rainfall.launcher.Launcher;
 import rainfall.launcher.Option;
+import rainfall.launcher.Runner;
+import rainfall.launcher.Watcher;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Snapshot;
+import rainfall.utility.Bencher;
 import rainfall.utility.Box;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
 import rainfall.utility.Result;
 import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+import rainfall.workspace.Loader;
 import rainfall.workspace.PhysicalName;
 
 /**
@@ -32,37 +51,69 @@ class CLIEntry {
   private int current;
 
   /**
-   * Entry to the compiler from the command-line interface.
+   * Code the process exits with when the compiler fails.
+   */
+  private static final int FAILURE = 1;
+
+  /**
+   * Entry to the compiler from the command-line interface. The process exits
+   * with a code other than zero if the compiler fails; thus, scripts can
+   * stop on the failure.
    *
    * @param arguments Arguments provided from the command-line.
    */
   public static void main(final String[] arguments) {
-    // Stop if there are any unit tests that fail.
-    if (!runAllTests()) {
-      System.err.println("Stopping the compiler because of the failed tests!");
-      return;
-    }
-
     // Stop if it fails to parse the arguments.
     final var launcher = new CLIEntry(List.of(arguments)).parse();
     if (launcher.isFailure()) {
       System.err.println(launcher.error());
-      return;
+      System.exit(FAILURE);
+    }
+
+    // Stop if the unit tests are asked for and there are any that fail.
+    if (launcher.value().options().containsKey(Option.SelfTest.class)
+      && !runAllTests(launcher.value())) {
+      System.err.println("Stopping the compiler because of the failed tests!");
+      System.exit(FAILURE);
     }
+
+    // Forward the command to the daemon if there is one serving the
+    // workspace. Report if the command fails.
+    // Exit with the code of the run executable.
+    final var forwarded = Daemon.forward(launcher.value());
+    final var launch    = forwarded.isFull()
+      ? forwarded.get().map(success -> 0)
+      : launcher.value().launch();
+    if (launch.isFailure()) {
+      System.err.println(launch.error());
+      System.exit(FAILURE);
+    }
+    if (launch.value() != 0) System.exit(launch.value());
   }
 
   /**
-   * Runs all the unit tests for all the components of the compiler.
+   * Runs all the unit tests for all the components of the compiler. The
+   * suites run one by one in the main thread if there is a single job.
    *
-   * @return Whether all unit tests passed.
+   * @param  launcher Launcher whose jobs run the suites.
+   * @return          Whether all unit tests passed.
    */
-  private static boolean runAllTests() {
-    final var tester = new Tester();
-    Box.test(tester);
-    Result.test(tester);
-    PhysicalName.test(tester);
-    Option.test(tester);
-    CLIEntry.test(tester);
+  private static boolean runAllTests(final Launcher launcher) {
+    final var tester =
+      new Tester(launcher.jobs() == 1 ? null : launcher.pool());
+
+    // Suites that enable the measurements of the whole process run alone, as
+    // they would measure the other suites too.
+    tester.suites(List.of(Metrics::test));
+    tester.suites(List.of(Launcher::test));
+
+    // Run the other suites concurrently.
+    tester.suites(List.of(Box::test, Result::test, Events::test,
+      PhysicalName::test, Contents::test, Loader::test, Lexer::test,
+      Parser::test, Snapshot::test, Checker::test, Graph::test,
+      Scheduler::test, Output::test, Generator::test, Stamp::test,
+      Toolchain::test, Option::test, Daemon::test, Watcher::test,
+      Runner::test, CLIEntry::test));
     return tester.report();
   }
 
@@ -118,9 +169,18 @@ class CLIEntry {
       final var shortcut = option.charAt(1);
       return switch (shortcut) {
       case 'd' -> parseDirectory(option).map(Box::full);
+      case 's' -> Result.success(Box.full(new Option.SelfTest()));
+      case 'p' -> Result.success(Box.full(new Option.Split()));
+      case 'm' -> parseMetrics(option).map(Box::full);
+      case 'j' -> parseJobs(option).map(Box::full);
       default -> Result.failure("""
         Unknown option shortcut `%s`! Use:
-         - directory (d): sets workspace directory""".formatted(shortcut));
+         - directory (d): sets workspace directory
+         - self-test (s): runs the unit tests of the compiler
+         - split (p): generates a file per package
+         - metrics (m): writes the measurements to a file
+         - jobs (j): sets the number of threads"""
+        .formatted(shortcut));
       };
     }
 
@@ -129,9 +189,18 @@ class CLIEntry {
       final var name = option.substring(2);
       return switch (name) {
       case "directory" -> parseDirectory(option).map(Box::full);
+      case "self-test" -> Result.success(Box.full(new Option.SelfTest()));
+      case "split" -> Result.success(Box.full(new Option.Split()));
+      case "metrics" -> parseMetrics(option).map(Box::full);
+      case "jobs" -> parseJobs(option).map(Box::full);
       default -> Result.failure("""
         Unknown option name `%s`! Use:
-         - directory (d): sets workspace directory""".formatted(name));
+         - directory (d): sets workspace directory
+         - self-test (s): runs the unit tests of the compiler
+         - split (p): generates a file per package
+         - metrics (m): writes the measurements to a file
+         - jobs (j): sets the number of threads"""
+        .formatted(name));
       };
     }
 
@@ -162,6 +231,51 @@ class CLIEntry {
     }
   }
 
+  /**
+   * Parses a metrics option.
+   *
+   * @param  option Argument that indicated the parsed option. Used for
+   *                  reporting in the error message.
+   * @return        Parsed metrics option, or error message.
+   */
+  private Result<Option, String> parseMetrics(final String option) {
+    // Check whether the path to the measurements file exists.
+    if (!has()) return Result
+      .failure("Expected measurements file argument after the `%s` option!"
+        .formatted(option));
+    final var argument = advance();
+
+    // Try converting the argument to a path.
+    try {
+      return Result.success(new Option.Metrics(Path.of(argument)));
+    } catch (InvalidPathException exception) {
+      return Result.failure(exception.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * Parses a jobs option.
+   *
+   * @param  option Argument that indicated the parsed option. Used for
+   *                  reporting in the error message.
+   * @return        Parsed jobs option, or error message.
+   */
+  private Result<Option, String> parseJobs(final String option) {
+    // Check whether the number of jobs exists.
+    if (!has()) return Result
+      .failure("Expected number of jobs argument after the `%s` option!"
+        .formatted(option));
+    final var argument = advance();
+
+    // Try converting the argument to a positive number.
+    try {
+      final var count = Integer.parseInt(argument);
+      if (count > 0) return Result.success(new Option.Jobs(count));
+    } catch (NumberFormatException exception) {}
+    return Result.failure("Number of jobs must be a positive integer, not `%s`!"
+      .formatted(argument));
+  }
+
   /**
    * Parses a command.
    *
@@ -175,7 +289,9 @@ class CLIEntry {
        - check (c): checks packages
        - test  (t): tests packages
        - build (b): builds a package
-       - run   (r): runs a package""");
+       - run   (r): runs a package
+       - serve (s): serves other launches
+       - watch (w): checks packages on change""");
     final var command = advance();
 
     // Dispatch over the command name or shortcut.
@@ -185,13 +301,17 @@ class CLIEntry {
     case "test", "t" -> parseTest(command);
     case "build", "b" -> parseBuild(command);
     case "run", "r" -> parseRun(command);
+    case "serve", "s" -> Result.<Command, String>success(new Command.Serve());
+    case "watch", "w" -> parseWatch(command);
     default -> Result.<Command, String>failure("""
       Could not recognize the given command `%s`! Use:
        - new   (n): creates a package
        - check (c): checks packages
        - test  (t): tests packages
        - build (b): builds a package
-       - run   (r): runs a package""".formatted(command));
+       - run   (r): runs a package
+       - serve (s): serves other launches
+       - watch (w): checks packages on change""".formatted(command));
     };
 
     // Check whether all the arguments are consumed.
@@ -271,6 +391,17 @@ class CLIEntry {
       .map(name -> new Command.Run(name, advanceToEnd()));
   }
 
+  /**
+   * Parses a watch command.
+   *
+   * @param  command Argument that indicated the parsed command. Used for
+   *                   reporting in the error message.
+   * @return         Parsed watch command, or error message.
+   */
+  private Result<Command, String> parseWatch(final String command) {
+    return parseNames(command).map(Command.Watch::new);
+  }
+
   /**
    * Parses all the remaining arguments as package names.
    *
@@ -280,19 +411,23 @@ class CLIEntry {
    * @return         Parsed package names, or error message.
    */
   private Result<List<PhysicalName>, String> parseNames(final String command) {
-    // Check whether all the remaining arguments are unique.
-    final var arguments       = advanceToEnd();
-    final var uniqueArguments = arguments.stream().collect(Collectors.toSet());
-    if (uniqueArguments.size() < arguments.size()) return Result
-      .failure("Repeated names are given to `%s` command!".formatted(command));
-
-    // Try to parse names, and combine them to a list if all are valid.
-    // Concatenate error messages if there are any invalid ones.
-    return Result.combine(
-      uniqueArguments.stream().map(PhysicalName::of).toList(),
-      Function.identity(),
-      errors -> "Invalid names are given to `%s` command".formatted(command,
-        String.join(System.lineSeparator(), errors.toArray(String[]::new))));
+    // Check whether all the remaining arguments are unique, while parsing
+    // them as names in the given order.
+    final var arguments = advanceToEnd();
+    final var unique    = new HashSet<String>(arguments.size() * 2);
+    final var names     =
+      new ArrayList<Result<PhysicalName, String>>(arguments.size());
+    for (final var argument : arguments) {
+      if (!unique.add(argument)) return Result.failure(
+        "Repeated names are given to `%s` command!".formatted(command));
+      names.add(PhysicalName.of(argument));
+    }
+
+    // Combine the names to a list if all are valid. Concatenate error messages
+    // if there are any invalid ones.
+    return Result.combine(names, Function.identity(),
+      errors -> "Invalid names are given to `%s` command!%n%s".formatted(
+        command, String.join(System.lineSeparator(), errors)));
   }
 
   /**
@@ -364,6 +499,23 @@ class CLIEntry {
       return parser.parseNames("c").isSuccess();
     });
 
+    // Test whether names are parsed in the given order.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("B", "A", "C"));
+      parser.current = 0;
+      final var parsed = parser.parseNames("c");
+      return parsed.isSuccess() && parsed.value().get(0).value.equals("B")
+        && parsed.value().get(2).value.equals("C");
+    });
+
+    // Test whether invalid names are reported.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("a", "B", "c"));
+      parser.current = 0;
+      final var parsed = parser.parseNames("c");
+      return parsed.isFailure() && parsed.error().lines().count() == 3;
+    });
+
     // Test whether new command parser expects a package name.
     tester.run(() -> {
       final var parser = new CLIEntry(List.of());
@@ -507,6 +659,32 @@ class CLIEntry {
       return parsed.isSuccess() && parsed.value() instanceof Command.Run;
     });
 
+    // Test whether a serve command shortcut is parsed correctly.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("s"));
+      parser.current = 0;
+      final var parsed = parser.parseCommand();
+      return parsed.isSuccess() && parsed.value() instanceof Command.Serve;
+    });
+
+    // Test whether a watch command is parsed correctly.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("w", "A"));
+      parser.current = 0;
+      final var parsed = parser.parseCommand();
+      return parsed.isSuccess()
+        && parsed.value() instanceof Command.Watch watch
+        && watch.watched().size() == 1;
+    });
+
+    // Test whether a serve command name is parsed correctly.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("serve"));
+      parser.current = 0;
+      final var parsed = parser.parseCommand();
+      return parsed.isSuccess() && parsed.value() instanceof Command.Serve;
+    });
+
     // Test whether an unknown command is checked.
     tester.run(() -> {
       final var parser = new CLIEntry(List.of("0"));
@@ -594,6 +772,95 @@ class CLIEntry {
         && parsed.value().get() instanceof Option.Directory;
     });
 
+    // Test whether option parser understands self-test option shortcut.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-s"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.SelfTest;
+    });
+
+    // Test whether option parser understands self-test option name.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("--self-test"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.SelfTest;
+    });
+
+    // Test whether option parser understands split option shortcut.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-p"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Split;
+    });
+
+    // Test whether option parser understands split option name.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("--split"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Split;
+    });
+
+    // Test whether option parser understands metrics option shortcut.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-m", "metrics.json"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Metrics metrics
+        && metrics.output().equals(Path.of("metrics.json"));
+    });
+
+    // Test whether option parser understands metrics option name.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("--metrics", "metrics.json"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Metrics;
+    });
+
+    // Test whether option parser understands jobs option shortcut.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-j", "4"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Jobs jobs
+        && jobs.count() == 4;
+    });
+
+    // Test whether option parser understands jobs option name.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("--jobs", "1"));
+      parser.current = 0;
+      final var parsed = parser.parseOption();
+      return parsed.isSuccess() && parsed.value().isFull()
+        && parsed.value().get() instanceof Option.Jobs;
+    });
+
+    // Test whether jobs option parser checks invalid numbers.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-j", "0", "-j", "a", "-j"));
+      parser.current = 0;
+      return parser.parseOption().isFailure()
+        && parser.parseOption().isFailure() && parser.parseOption().isFailure();
+    });
+
+    // Test whether metrics option parser checks a missing path.
+    tester.run(() -> {
+      final var parser = new CLIEntry(List.of("-m"));
+      parser.current = 0;
+      return parser.parseOption().isFailure();
+    });
+
     // Test whether option parser checks unknown names.
     tester.run(() -> {
       final var parser = new CLIEntry(List.of("--0"));
@@ -627,4 +894,15 @@ class CLIEntry {
       return parser.parse().isFailure();
     });
   }
+
+  /**
+   * Runs all the benchmarks for {@link CLIEntry}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  static void benchmark(final Bencher bencher) {
+    // Benchmark parsing a typical launch.
+    final var arguments = List.of("-d", ".", "check", "A", "B", "C");
+    bencher.run("CLIEntry.parse check", () -> new CLIEntry(arguments).parse());
+  }
 }
@@ -0,0 +1,258 @@
+package rainfall.checker;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Tokens;
+import rainfall.syntax.Tree;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+import rainfall.workspace.Package;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Source;
+
+/**
+ * Checks the validity of the sources in a package. A package can only be
+ * checked after the packages it imports.
+ *
+ * <p>
+ * A package is imported with a statement at the top level of a source, which
+ * consists of the word {@code import} and the name of the imported package;
+ * for example, {@code import Other;}.
+ *
+ * <p>
+ * A package is an executable if it defines the {@code main} function at the
+ * top level of a source; for example, {@code int main(void) { return 0; }}.
+ *
+ * @author calestialgem
+ */
+public final class Checker {
+  /**
+   * Word that starts an import statement.
+   */
+  private static final String IMPORT = "import";
+
+  /**
+   * Name of the function that an executable package defines.
+   */
+  private static final String MAIN = "main";
+
+  /**
+   * Checks a package, and measures it.
+   *
+   * @param  name    Name of the checked package.
+   * @param  checked Checked package.
+   * @return         Success, or error message.
+   */
+  public static Result<Void, String> check(final PhysicalName name,
+    final Package<Tree> checked) {
+    return Metrics.measure("check", name, () -> {
+      final var event = new Events.Check();
+      event.begin();
+      final var outcome = check(checked);
+      var size = 0L;
+      for (final var source : checked.sources())
+        size += source.model().tokens.contents.size();
+      event.finish(name, size);
+      return outcome;
+    });
+  }
+
+  /**
+   * Checks a package.
+   *
+   * @param  checked Checked package.
+   * @return         Success, or error message.
+   */
+  private static Result<Void, String> check(final Package<Tree> checked) {
+    final var errors = new ArrayList<String>();
+    for (final var source : checked.sources()) {
+      final var tree = source.model();
+
+      // Check whether there are repeated imports.
+      final var imports = imports(tree);
+      if (imports.isFailure()) {
+        errors.add(imports.error());
+        continue;
+      }
+      final var unique = new HashSet<PhysicalName>();
+      for (final var imported : imports.value()) if (!unique.add(imported))
+        errors.add("%s: Package `%s` is imported again!"
+          .formatted(source.path(), imported));
+
+      // Check whether there are imports that are not at the top level.
+      for (var node = tree.first(0); node < tree.end(0); node = tree.end(node))
+        for (var nested = tree.first(node); nested < tree.end(node); nested++)
+          if (tree.kind(nested) == Tree.STATEMENT && isImport(tree, nested))
+            errors.add("%s: Imports must be at the top level!"
+              .formatted(locate(tree, nested)));
+    }
+    if (!errors.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), errors));
+    return Result.success();
+  }
+
+  /**
+   * Finds the packages imported by a source.
+   *
+   * @param  tree Tree of the source.
+   * @return      Names of the imported packages in the order they are
+   *                imported, or error message.
+   */
+  public static Result<List<PhysicalName>, String> imports(final Tree tree) {
+    final var imports = new ArrayList<PhysicalName>();
+    for (var node = tree.first(0); node < tree.end(0); node = tree.end(node)) {
+      if (!isImport(tree, node)) continue;
+
+      // Check whether the import is followed by a single name.
+      final var keyword = tree.first(node);
+      final var name    = tree.end(keyword);
+      if (name == tree.end(node) || tree.end(name) != tree.end(node)
+        || tree.kind(name) != Tree.TOKEN
+        || tree.tokens.kind(tree.reference(name)) != Tokens.IDENTIFIER)
+        return Result.failure("%s: Expected a single package name to import!"
+          .formatted(locate(tree, node)));
+
+      final var token    = tree.reference(name);
+      final var imported = PhysicalName.of(tree.tokens.contents,
+        tree.tokens.start(token), tree.tokens.length(token));
+      if (imported.isFailure()) return Result.failure(
+        "%s: %s".formatted(locate(tree, name), imported.error()));
+      imports.add(imported.value());
+    }
+    return Result.success(imports);
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of a statement.
+   * @return      Whether the statement is an import.
+   */
+  public static boolean isImport(final Tree tree, final int node) {
+    final var first = tree.first(node);
+    return first < tree.end(node) && tree.kind(first) == Tree.TOKEN
+      && tree.tokens.is(tree.reference(first), IMPORT);
+  }
+
+  /**
+   * @param  checked Checked package.
+   * @return         Whether the package defines the {@code main} function,
+   *                   which makes it an executable that can be tested.
+   */
+  public static boolean isExecutable(final Package<Tree> checked) {
+    for (final var source : checked.sources()) {
+      final var tree = source.model();
+      for (var node = tree.first(0); node < tree.end(0); node = tree.end(node))
+        for (var child = tree.first(node); child < tree.end(node);
+          child = tree.end(child)) {
+          // The name of the function is followed by its parameters, which are
+          // followed by its body that ends the definition; otherwise, it is
+          // only a declaration.
+          final var next = tree.end(child);
+          if (tree.kind(child) == Tree.TOKEN && next < tree.end(node)
+            && tree.kind(next) == Tree.GROUP && tree.end(next) < tree.end(node)
+            && tree.kind(tree.end(next)) == Tree.BLOCK
+            && tree.end(tree.end(next)) == tree.end(node)
+            && tree.tokens.kind(tree.reference(child)) == Tokens.IDENTIFIER
+            && tree.tokens.is(tree.reference(child), MAIN))
+            return true;
+        }
+    }
+    return false;
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the located node.
+   * @return      Location of the token the node refers to.
+   */
+  private static String locate(final Tree tree, final int node) {
+    return tree.tokens.contents
+      .locate(tree.tokens.start(tree.reference(node)));
+  }
+
+  /**
+   * Constructs a checker, which is not used as the class only has static
+   * members.
+   */
+  private Checker() {}
+
+  /**
+   * Runs all the unit tests for {@link Checker}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether imports are found in order.
+    tester.run(() -> {
+      final var imports = imports(parse("import B; a; import A;"));
+      return imports.isSuccess()
+        && imports.value().equals(List.of(PhysicalName.of("B").value(),
+          PhysicalName.of("A").value()));
+    });
+
+    // Test whether imports without a single name are checked.
+    tester.run(() -> imports(parse("import;")).isFailure()
+      && imports(parse("import A B;")).isFailure()
+      && imports(parse("import (A);")).isFailure());
+
+    // Test whether imported names are checked.
+    tester.run(() -> imports(parse("import a;")).isFailure());
+
+    // Test whether a valid package is checked.
+    tester.run(() -> check(file("import A; import B; a { b; }")).isSuccess());
+
+    // Test whether repeated imports are checked.
+    tester.run(() -> check(file("import A; import A;")).isFailure());
+
+    // Test whether nested imports are checked.
+    tester.run(() -> check(file("a { import A; }")).isFailure());
+
+    // Test whether the packages that define the main function are found.
+    tester.run(() -> isExecutable(file("int main(void) { return 0; }"))
+      && !isExecutable(file("int f(void) { return 0; }"))
+      && !isExecutable(file("int f(void) { main(); }"))
+      && !isExecutable(file("int main;")));
+
+    // Test whether the packages that only declare the main function are not
+    // found.
+    tester.run(() -> !isExecutable(file("int main(void);"))
+      && !isExecutable(file("int main(void); int f(void) { return 0; }")));
+
+    // Test whether a named package is checked.
+    tester.run(() -> check(PhysicalName.of("Test").value(), file("a; b { c; }"))
+      .isSuccess());
+  }
+
+  /**
+   * Lexes and parses the given text.
+   *
+   * @param  text Parsed text.
+   * @return      Tree of the text.
+   */
+  static Tree parse(final String text) {
+    return Lexer
+      .lex(Contents.wrap(Path.of("Test.tr"),
+        text.getBytes(StandardCharsets.UTF_8)))
+      .flatMap(Parser::parse).value();
+  }
+
+  /**
+   * Creates a file package with the given text.
+   *
+   * @param  text Text of the source of the package.
+   * @return      Created package.
+   */
+  static Package<Tree> file(final String text) {
+    return new Package.File<>(new Source<>(
+      PhysicalName.of("Test").value(), Path.of("Test.tr"), parse(text)));
+  }
+}
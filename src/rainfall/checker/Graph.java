@@ -0,0 +1,327 @@
+package rainfall.checker;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import rainfall.syntax.Tree;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Package;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Source;
+import rainfall.workspace.Workspace;
+
+/**
+ * Packages in a workspace and the packages they import. Imports do not form
+ * cycles; thus, the packages can be ordered such that a package comes after
+ * all the packages it imports.
+ *
+ * @author calestialgem
+ */
+public final class Graph {
+  /**
+   * Comparator that orders the names by their values. Used for keeping the
+   * order of the packages the same between launches.
+   */
+  static final Comparator<PhysicalName> ORDER =
+    Comparator.comparing(name -> name.value);
+
+  /**
+   * Imported packages of the packages, sorted by their names.
+   */
+  private final Map<PhysicalName, List<PhysicalName>> imports;
+
+  /**
+   * Packages sorted such that the imported ones come first. Packages that
+   * could be in any order are sorted by their names.
+   */
+  private final List<PhysicalName> order;
+
+  /**
+   * Finds the imports of all the packages in a workspace.
+   *
+   * @param  workspace Workspace of the packages.
+   * @return           Graph of the packages, or error message.
+   */
+  public static Result<Graph, String> of(final Workspace<Tree> workspace) {
+    final var errors  = new ArrayList<String>();
+    final var imports = new HashMap<PhysicalName, List<PhysicalName>>();
+    for (final var name : sorted(workspace.packages().keySet())) {
+      final var found = new TreeSet<PhysicalName>(ORDER);
+      for (final var source : workspace.packages().get(name).sources()) {
+        final var sourceImports = Checker.imports(source.model());
+        if (sourceImports.isFailure()) {
+          errors.add(sourceImports.error());
+          continue;
+        }
+
+        // Check whether the imported packages exist.
+        for (final var imported : sourceImports.value()) {
+          if (imported == name) errors.add(
+            "%s: Package `%s` imports itself!".formatted(source.path(), name));
+          else if (!workspace.packages().containsKey(imported))
+            errors.add("%s: Imported package `%s` does not exist!"
+              .formatted(source.path(), imported));
+          else found.add(imported);
+        }
+      }
+      imports.put(name, List.copyOf(found));
+    }
+    if (!errors.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), errors));
+    return of(imports);
+  }
+
+  /**
+   * Orders the given packages.
+   *
+   * @param  imports Imported packages of the packages.
+   * @return         Graph of the packages, or error message if the imports
+   *                   form a cycle.
+   */
+  static Result<Graph, String> of(
+    final Map<PhysicalName, List<PhysicalName>> imports) {
+    // Visit the packages depth first, adding a package after its imports.
+    final var order   = new ArrayList<PhysicalName>(imports.size());
+    final var visited = new HashSet<PhysicalName>();
+    for (final var name : sorted(imports.keySet())) {
+      final var visit = visit(imports, name, order, visited);
+      if (visit.isFailure()) return visit.propagate();
+    }
+    return Result.success(new Graph(Map.copyOf(imports), List.copyOf(order)));
+  }
+
+  /**
+   * Adds the given package to the order after adding its imports. The
+   * imports are visited with an explicit stack instead of recursion; thus, a
+   * long chain of imports does not overflow the stack of the thread.
+   *
+   * @param  imports Imported packages of the packages.
+   * @param  name    Name of the visited package.
+   * @param  order   Packages that are ordered.
+   * @param  visited Packages that are visited.
+   * @return         Success, or error message if there is a cycle.
+   */
+  private static Result<Void, String> visit(
+    final Map<PhysicalName, List<PhysicalName>> imports,
+    final PhysicalName name, final List<PhysicalName> order,
+    final Set<PhysicalName> visited) {
+    if (!visited.add(name)) return Result.success();
+
+    // Packages whose imports are being visited, which is the chain of imports
+    // that lead to the last one, and the index of the next visited import of
+    // each.
+    final var visiting = new ArrayList<PhysicalName>();
+    final var chained  = new HashSet<PhysicalName>();
+    final var next     = new ArrayList<Integer>();
+    visiting.add(name);
+    chained.add(name);
+    next.add(0);
+    while (!visiting.isEmpty()) {
+      final var last    = visiting.size() - 1;
+      final var current = visiting.get(last);
+      final var index   = next.get(last);
+
+      // Add the package after all of its imports are added.
+      if (index == imports.get(current).size()) {
+        visiting.remove(last);
+        chained.remove(current);
+        next.remove(last);
+        order.add(current);
+        continue;
+      }
+      next.set(last, index + 1);
+
+      // Report the chain of imports starting from the package that is
+      // imported again.
+      final var imported = imports.get(current).get(index);
+      if (chained.contains(imported)) {
+        final var cycle = new ArrayList<String>();
+        for (final var member : visiting.subList(visiting.indexOf(imported),
+          visiting.size()))
+          cycle.add(member.value);
+        cycle.add(imported.value);
+        return Result.failure("Packages import each other: %s!"
+          .formatted(String.join(" -> ", cycle)));
+      }
+      if (!visited.add(imported)) continue;
+      visiting.add(imported);
+      chained.add(imported);
+      next.add(0);
+    }
+    return Result.success();
+  }
+
+  /**
+   * @param  names Names to sort.
+   * @return       Names sorted by their values.
+   */
+  private static List<PhysicalName> sorted(
+    final Collection<PhysicalName> names) {
+    final var sorted = new ArrayList<>(names);
+    sorted.sort(ORDER);
+    return sorted;
+  }
+
+  /**
+   * Constructs a graph.
+   *
+   * @param imports Imported packages of the packages, sorted by their names.
+   * @param order   Packages sorted such that the imported ones come first.
+   */
+  private Graph(final Map<PhysicalName, List<PhysicalName>> imports,
+    final List<PhysicalName> order) {
+    this.imports = imports;
+    this.order   = order;
+  }
+
+  /**
+   * @param  name Name of the package.
+   * @return      Packages directly imported by the package.
+   */
+  public List<PhysicalName> imports(final PhysicalName name) {
+    return imports.get(name);
+  }
+
+  /**
+   * @return Packages sorted such that the imported ones come first.
+   */
+  public List<PhysicalName> order() { return order; }
+
+  /**
+   * Finds the packages that are needed by the given ones.
+   *
+   * @param  roots Names of the needed packages. All the packages are needed
+   *                 if it is empty.
+   * @return       Given packages and the packages they import directly or
+   *                 indirectly, sorted such that the imported ones come first.
+   */
+  public List<PhysicalName> closure(final Collection<PhysicalName> roots) {
+    if (roots.isEmpty()) return order;
+    final var needed  = new HashSet<PhysicalName>();
+    final var pending = new ArrayList<>(roots);
+    while (!pending.isEmpty()) {
+      final var name = pending.remove(pending.size() - 1);
+      if (needed.add(name)) pending.addAll(imports.get(name));
+    }
+    final var closure = new ArrayList<PhysicalName>(needed.size());
+    for (final var name : order) if (needed.contains(name)) closure.add(name);
+    return closure;
+  }
+
+  /**
+   * Finds the packages that need the given ones.
+   *
+   * @param  changed Names of the needed packages.
+   * @return         Given packages and the packages that import them directly
+   *                   or indirectly.
+   */
+  public Set<PhysicalName> dependents(final Collection<PhysicalName> changed) {
+    // Visit the packages in order; thus, the imports of a package are visited
+    // before it.
+    final var dependents = new HashSet<>(changed);
+    for (final var name : order) for (final var imported : imports.get(name))
+      if (dependents.contains(imported)) {
+        dependents.add(name);
+        break;
+      }
+    return dependents;
+  }
+
+  /**
+   * Runs all the unit tests for {@link Graph}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether the imported packages come first.
+    tester.run(() -> {
+      final var graph = of(Map.of(name("A"), List.of(name("C")), name("B"),
+        List.of(), name("C"), List.of(name("B"))));
+      return graph.isSuccess() && graph.value().order()
+        .equals(List.of(name("B"), name("C"), name("A")));
+    });
+
+    // Test whether independent packages are sorted by their names.
+    tester.run(() -> {
+      final var graph = of(Map.of(name("B"), List.of(), name("A"), List.of()));
+      return graph.isSuccess()
+        && graph.value().order().equals(List.of(name("A"), name("B")));
+    });
+
+    // Test whether cycles are checked.
+    tester.run(() -> {
+      final var graph = of(Map.of(name("A"), List.of(name("B")), name("B"),
+        List.of(name("A"))));
+      return graph.isFailure() && graph.error().contains("A -> B -> A");
+    });
+
+    // Test whether a long chain of imports is ordered.
+    tester.run(() -> {
+      final var imports = new HashMap<PhysicalName, List<PhysicalName>>();
+      for (var i = 0; i < 100000; i++)
+        imports.put(name("P%d".formatted(i)),
+          i == 99999 ? List.of() : List.of(name("P%d".formatted(i + 1))));
+      final var graph = of(imports);
+      return graph.isSuccess() && graph.value().order().size() == 100000
+        && graph.value().order().get(0).equals(name("P99999"));
+    });
+
+    // Test whether the closure only has the needed packages.
+    tester.run(() -> {
+      final var graph = of(Map.of(name("A"), List.of(name("B")), name("B"),
+        List.of(), name("C"), List.of()));
+      return graph.value().closure(List.of(name("A")))
+        .equals(List.of(name("B"), name("A")))
+        && graph.value().closure(List.of()).size() == 3;
+    });
+
+    // Test whether the dependents are the packages that need the given one.
+    tester.run(() -> {
+      final var graph = of(Map.of(name("A"), List.of(name("B")), name("B"),
+        List.of(name("C")), name("C"), List.of(), name("D"), List.of()));
+      return graph.value().dependents(List.of(name("C")))
+        .equals(Set.of(name("A"), name("B"), name("C")));
+    });
+
+    // Test whether the imports are found in a workspace.
+    tester.run(() -> {
+      final var graph = of(workspace(Map.of("A", "import B;", "B", "")));
+      return graph.isSuccess()
+        && graph.value().imports(name("A")).equals(List.of(name("B")));
+    });
+
+    // Test whether imports of missing packages and self imports are checked.
+    tester.run(() -> of(workspace(Map.of("A", "import B;"))).isFailure()
+      && of(workspace(Map.of("A", "import A;"))).isFailure());
+  }
+
+  /**
+   * @param  value Value of the name.
+   * @return       Name with the given value.
+   */
+  static PhysicalName name(final String value) {
+    return PhysicalName.of(value).value();
+  }
+
+  /**
+   * Creates a workspace of file packages.
+   *
+   * @param  texts Texts of the sources mapped to the names of the packages.
+   * @return       Created workspace.
+   */
+  static Workspace<Tree> workspace(final Map<String, String> texts) {
+    final var packages = new HashMap<PhysicalName, Package<Tree>>();
+    texts.forEach((name, text) -> packages.put(name(name), new Package.File<>(
+      new Source<>(name(name), Path.of(name + ".tr"), Checker.parse(text)))));
+    return new Workspace<>(packages);
+  }
+}
@@ -0,0 +1,161 @@
+package rainfall.checker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.PhysicalName;
+
+/**
+ * Runs work for the packages concurrently, where the work for a package
+ * starts as soon as the work for all the packages it imports finish.
+ *
+ * @author calestialgem
+ */
+public final class Scheduler {
+  /**
+   * Work for a package, which is given the name of the package and the results
+   * of the work for the packages it imports.
+   *
+   * @param <Done> Type of the result of the work.
+   */
+  @FunctionalInterface
+  public interface Work<Done> extends
+    BiFunction<PhysicalName, Map<PhysicalName, Done>, Result<Done, String>> {}
+
+  /**
+   * Does work for the given packages and the packages they need.
+   *
+   * @param  <Done> Type of the result of the work for a package.
+   * @param  pool   Pool that runs the work.
+   * @param  graph  Graph of the packages.
+   * @param  roots  Names of the packages the work is done for. Work is done for
+   *                  all the packages if it is empty.
+   * @param  work   Function that does the work for a package given its name
+   *                  and the results for the packages it imports.
+   * @return        Results of the work mapped to the names of the packages, or
+   *                  the errors sorted by the names of the packages.
+   */
+  public static <Done> Result<Map<PhysicalName, Done>, String> run(
+    final ForkJoinPool pool, final Graph graph,
+    final Collection<PhysicalName> roots,
+    final Work<Done> work) {
+    // Chain the work for each package to the work of its imports. Packages are
+    // ordered such that the imported ones are chained first. The chained work
+    // is given the work of its imports, as it must not read the map that is
+    // still being filled by this thread.
+    final var closure = graph.closure(roots);
+    final var futures =
+      new HashMap<PhysicalName, CompletableFuture<Result<Done, String>>>();
+    for (final var name : closure) {
+      final var imports = graph.imports(name);
+      final var waited  =
+        new ArrayList<CompletableFuture<Result<Done, String>>>(imports.size());
+      for (final var imported : imports) waited.add(futures.get(imported));
+      futures.put(name,
+        CompletableFuture.allOf(waited.toArray(CompletableFuture<?>[]::new))
+          .thenApplyAsync(ignored -> after(name, imports, waited, work),
+            pool));
+    }
+
+    // Wait for all the work, and report the errors in a stable order.
+    final var sorted = new ArrayList<>(closure);
+    sorted.sort(Graph.ORDER);
+    final var results = new ArrayList<Result<Done, String>>(sorted.size());
+    for (final var name : sorted) results.add(futures.get(name).join());
+    return Result.combine(results, values -> {
+      final var done = new HashMap<PhysicalName, Done>();
+      for (var i = 0; i < values.size(); i++)
+        done.put(sorted.get(i), values.get(i));
+      return done;
+    }, errors -> String.join(System.lineSeparator(), errors));
+  }
+
+  /**
+   * Does the work for a package after the work for its imports are done.
+   *
+   * @param  <Done>  Type of the result of the work for a package.
+   * @param  name    Name of the package.
+   * @param  imports Names of the packages imported by the package.
+   * @param  waited  Work for the imports in the same order, which is done.
+   * @param  work    Function that does the work for a package.
+   * @return         Result of the work for the package, or error message.
+   */
+  private static <Done> Result<Done, String> after(final PhysicalName name,
+    final List<PhysicalName> imports,
+    final List<CompletableFuture<Result<Done, String>>> waited,
+    final Work<Done> work) {
+    final var done = new HashMap<PhysicalName, Done>();
+    for (var i = 0; i < imports.size(); i++) {
+      final var imported = imports.get(i);
+      final var result   = waited.get(i).join();
+      if (result.isFailure()) return Result.failure(
+        "Package `%s` is skipped because its import `%s` failed!"
+          .formatted(name, imported));
+      done.put(imported, result.value());
+    }
+    return work.apply(name, done);
+  }
+
+  /**
+   * Constructs a scheduler, which is not used as the class only has static
+   * members.
+   */
+  private Scheduler() {}
+
+  /**
+   * Runs all the unit tests for {@link Scheduler}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    final var graph = Graph.of(Map.of(Graph.name("A"), List.of(Graph.name("B"),
+      Graph.name("C")), Graph.name("B"), List.of(Graph.name("C")),
+      Graph.name("C"), List.of(), Graph.name("D"), List.of())).value();
+
+    // Test whether the work starts after the work for the imports.
+    tester.run(() -> {
+      final var finished = new ConcurrentLinkedQueue<PhysicalName>();
+      final var result   = run(ForkJoinPool.commonPool(), graph, List.of(),
+        (name, imports) -> {
+          if (!finished.containsAll(graph.imports(name)))
+            return Result.failure("Started early!");
+          finished.add(name);
+          return Result.success(name);
+        });
+      return result.isSuccess() && result.value().size() == 4;
+    });
+
+    // Test whether the results for the imports are given to the work.
+    tester.run(() -> {
+      final var result = Scheduler.<Integer>run(ForkJoinPool.commonPool(),
+        graph, List.of(), (name, imports) -> Result.success(imports.values()
+          .stream().mapToInt(Integer::intValue).sum() + 1));
+      return result.isSuccess() && result.value().get(Graph.name("A")) == 4;
+    });
+
+    // Test whether only the needed packages are worked on.
+    tester.run(() -> {
+      final var result = run(ForkJoinPool.commonPool(), graph,
+        List.of(Graph.name("B")), (name, imports) -> Result.success(name));
+      return result.isSuccess() && result.value().size() == 2;
+    });
+
+    // Test whether the packages that import a failed one are skipped.
+    tester.run(() -> {
+      final var result = run(ForkJoinPool.commonPool(), graph, List.of(),
+        (name, imports) -> name.value.equals("C")
+          ? Result.failure("Failed!")
+          : Result.success(name));
+      return result.isFailure() && result.error().lines().count() == 3;
+    });
+  }
+}
@@ -0,0 +1,809 @@
+package rainfall.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+import rainfall.checker.Checker;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Tokens;
+import rainfall.syntax.Tree;
+import rainfall.utility.Bencher;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Loader;
+import rainfall.workspace.Package;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Workspace;
+
+/**
+ * Generates the C code of an executable package. The code of every package
+ * that is built is generated in a separate fork-join task into its own
+ * buffer, and the buffers are written to the file in the order of the
+ * packages; thus, the file is the same regardless of the order the tasks
+ * finish.
+ *
+ * <p>
+ * Alternatively, every package is generated to a separate C file, which are
+ * compiled in parallel by the Makefile that is generated with them. Files
+ * whose contents did not change are not written again; thus, only the changed
+ * ones are compiled again. The shared header defines the types and declares
+ * the functions and the objects of all the packages.
+ *
+ * <p>
+ * Statements are copied token by token, except the imports, which are only
+ * used for ordering the packages.
+ *
+ * @author calestialgem
+ */
+public final class Generator {
+  /**
+   * Path to the build directory relative to the workspace directory. The name
+   * starts with a dot; thus, it is ignored while loading the workspace.
+   */
+  public static final Path DIRECTORY = Path.of(".rainfall", "build");
+
+  /**
+   * Version of the generated code. Must be incremented when the generation
+   * changes, which makes the executables built by the older versions stale.
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * Extension of the generated C files.
+   */
+  public static final String EXTENSION = ".c";
+
+  /**
+   * Extension of the generated C headers.
+   */
+  public static final String HEADER = ".h";
+
+  /**
+   * Extension of the executables, which is only needed on Windows.
+   */
+  public static final String EXECUTABLE =
+    System.getProperty("os.name").startsWith("Windows") ? ".exe" : "";
+
+  /**
+   * Name of the generated Makefile.
+   */
+  public static final String MAKEFILE = "Makefile";
+
+  /**
+   * Word that starts a type alias.
+   */
+  private static final String TYPEDEF = "typedef";
+
+  /**
+   * Words that start a type, which is a type definition if it is followed by
+   * its block.
+   */
+  private static final List<String> TAGS = List.of("struct", "union", "enum");
+
+  /**
+   * Words that start a statement that is not declared in the shared header;
+   * either it is already a declaration or it is only visible in its own file.
+   */
+  private static final List<String> UNSHARED = List.of("extern", "static");
+
+  /**
+   * Finds the executable of a package, which is in the same directory as the
+   * files generated by splitting the package.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  built     Name of the built package.
+   * @return           Path to the executable.
+   */
+  public static Path executable(final Path directory,
+    final PhysicalName built) {
+    return directory.resolve(DIRECTORY).resolve(built.value)
+      .resolve(built.value + EXECUTABLE);
+  }
+
+  /**
+   * Generates the C file of a package.
+   *
+   * @param  pool      Pool that runs the generation tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  workspace Checked workspace.
+   * @param  packages  Names of the built package and the packages it imports,
+   *                     which are sorted such that the imported ones come
+   *                     first.
+   * @param  built     Name of the built package.
+   * @return           Path to the generated file, or error message.
+   */
+  public static Result<Path, String> generate(final ForkJoinPool pool,
+    final Path directory, final Workspace<Tree> workspace,
+    final List<PhysicalName> packages, final PhysicalName built) {
+    final var file = directory.resolve(DIRECTORY)
+      .resolve(built.value + EXTENSION);
+    final var outputs = new ArrayList<Output>(packages.size() + 1);
+    try {
+      final var prologue = Output.acquire();
+      outputs.add(prologue);
+      prologue.write("// Generated by Rainfall from the package `%s`.\n"
+        .formatted(built));
+
+      // Fork the packages, then join them in order.
+      final var tasks = new ArrayList<ForkJoinTask<Output>>(packages.size());
+      for (final var name : packages) tasks.add(ForkJoinTask.adapt(
+        () -> unit(directory, name, workspace.packages().get(name), false)));
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+      for (final var task : tasks) outputs.add(task.join());
+
+      return write(file, outputs);
+    } finally {
+      for (final var output : outputs) output.release();
+    }
+  }
+
+  /**
+   * Generates a separate C file for each package, a header that declares the
+   * definitions in all the packages, and a Makefile that compiles the files
+   * in parallel.
+   *
+   * @param  pool      Pool that runs the generation tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  workspace Checked workspace.
+   * @param  packages  Names of the built package and the packages it imports,
+   *                     which are sorted such that the imported ones come
+   *                     first.
+   * @param  built     Name of the built package.
+   * @return           Path to the generated Makefile, or error message.
+   */
+  public static Result<Path, String> split(final ForkJoinPool pool,
+    final Path directory, final Workspace<Tree> workspace,
+    final List<PhysicalName> packages, final PhysicalName built) {
+    final var target  = directory.resolve(DIRECTORY).resolve(built.value);
+    final var header  = built.value + HEADER;
+    final var outputs = new ArrayList<Output>(packages.size() + 2);
+    try {
+      final var prologue = Output.acquire();
+      outputs.add(prologue);
+      prologue.write("""
+        // Generated by Rainfall from the package `%s`.
+        #ifndef RAINFALL_%s
+        #define RAINFALL_%s
+        """.formatted(built, built, built));
+
+      // Fork the packages, which write their own files, then join their
+      // declarations in order.
+      final var tasks =
+        new ArrayList<ForkJoinTask<Result<Output, String>>>(packages.size());
+      for (final var name : packages) tasks.add(ForkJoinTask.adapt(
+        () -> file(directory, target, header, name,
+          workspace.packages().get(name))));
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+      final var errors = new ArrayList<String>();
+      for (final var task : tasks) {
+        final var declarations = task.join();
+        if (declarations.isSuccess()) outputs.add(declarations.value());
+        else errors.add(declarations.error());
+      }
+      if (!errors.isEmpty())
+        return Result.failure(String.join(System.lineSeparator(), errors));
+
+      final var epilogue = Output.acquire();
+      outputs.add(epilogue);
+      epilogue.write("\n#endif // RAINFALL_%s\n".formatted(built));
+      final var written = write(target.resolve(header), outputs);
+      if (written.isFailure()) return written;
+      return makefile(target, packages, built);
+    } finally {
+      for (final var output : outputs) output.release();
+    }
+  }
+
+  /**
+   * Generates the C file of a package, which includes the shared header.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  target    Path to the directory of the generated files.
+   * @param  header    Name of the shared header.
+   * @param  name      Name of the package.
+   * @param  generated Generated package.
+   * @return           Buffer that holds the declarations of the definitions in
+   *                     the package, or error message.
+   */
+  private static Result<Output, String> file(final Path directory,
+    final Path target, final String header, final PhysicalName name,
+    final Package<Tree> generated) {
+    final var prologue = Output.acquire();
+    final var code     = unit(directory, name, generated, true);
+    try {
+      prologue.write("// Generated by Rainfall.\n#include \"%s\"\n"
+        .formatted(header));
+      final var written =
+        write(target.resolve(name.value + EXTENSION), List.of(prologue, code));
+      if (written.isFailure()) return written.propagate();
+    } finally {
+      prologue.release();
+      code.release();
+    }
+    return Result.success(declarations(name, generated));
+  }
+
+  /**
+   * Generates the declarations that the other packages use. Type definitions
+   * are copied whole, as a type must be defined before its members are used.
+   * A function, which is a statement that ends with a block, is declared by
+   * leaving out the block; for example, {@code int f(void) { ... }} is
+   * declared as {@code int f(void);}. Any other statement is an object, which
+   * is declared as {@code extern} without its initializer; for example,
+   * {@code int counter = 0;} is declared as {@code extern int counter;}.
+   *
+   * @param  name      Name of the package.
+   * @param  generated Generated package.
+   * @return           Buffer that holds the declarations.
+   */
+  private static Output declarations(final PhysicalName name,
+    final Package<Tree> generated) {
+    final var output = Output.acquire();
+    output.write("\n// Package `%s`.\n".formatted(name));
+    for (final var source : generated.sources()) {
+      final var tree = source.model();
+      for (var node = tree.first(0); node < tree.end(0);
+        node = tree.end(node)) {
+        final var first = tree.first(node);
+        if (first == tree.end(node) || Checker.isImport(tree, node)
+          || is(tree, first, UNSHARED))
+          continue;
+        final var last = last(tree, node);
+
+        if (isType(tree, node)) {
+          // The declarators after the block of a type are parsed as the next
+          // statement, which is copied with an alias, but declared like any
+          // object otherwise.
+          final var next = declarators(tree, node);
+          statement(output, tree, node);
+          if (next == tree.end(0)) continue;
+          if (isObject(tree, node, next)) {
+            output.write(";\nextern ");
+            copy(output, tree, first, last);
+            copy(output, tree, tree.first(next), initializer(tree, next));
+            output.write(";\n");
+          } else {
+            statement(output, tree, next);
+          }
+          node = next;
+          continue;
+        }
+
+        if (tree.kind(last) == Tree.BLOCK) {
+          copy(output, tree, first, last);
+        } else {
+          output.write("extern ");
+          copy(output, tree, first, initializer(tree, node));
+        }
+        output.write(";\n");
+      }
+    }
+    return output;
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the statement.
+   * @return      Whether the statement defines a type, which is an alias, a
+   *                type with its block, or a type that is declared without
+   *                its block such as {@code struct Point;}.
+   */
+  private static boolean isType(final Tree tree, final int node) {
+    final var first = tree.first(node);
+    if (is(tree, first, TYPEDEF)) return true;
+    if (!is(tree, first, TAGS)) return false;
+    final var name = tree.end(first);
+    if (name < tree.end(node) && tree.end(name) == tree.end(node)) return true;
+    // A function that returns a type has its parameters before its block.
+    for (var child = first; child < tree.end(node); child = tree.end(child))
+      if (tree.kind(child) == Tree.GROUP) return false;
+    return tree.kind(last(tree, node)) == Tree.BLOCK;
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the statement that defines a type.
+   * @return      Index of the next statement if it holds the declarators
+   *                after the block of the type, which are parsed separately
+   *                as a block ends a statement; otherwise, the end of the
+   *                source.
+   */
+  private static int declarators(final Tree tree, final int node) {
+    if (tree.kind(last(tree, node)) != Tree.BLOCK) return tree.end(0);
+    return tree.end(node);
+  }
+
+  /**
+   * @param  tree        Tree of the source.
+   * @param  node        Index of the statement that defines a type.
+   * @param  declarators Index of the statement that holds the declarators
+   *                       after the block of the type.
+   * @return             Whether the declarators define objects of the type
+   *                       instead of aliases, such as the {@code p} in
+   *                       {@code struct Point { ... } p;}.
+   */
+  private static boolean isObject(final Tree tree, final int node,
+    final int declarators) {
+    return !is(tree, tree.first(node), TYPEDEF)
+      && tree.first(declarators) != tree.end(declarators);
+  }
+
+  /**
+   * @param  tree  Tree of the source.
+   * @param  node  Index of the item.
+   * @param  words Words that are checked.
+   * @return       Whether the item is a token that is one of the words.
+   */
+  private static boolean is(final Tree tree, final int node,
+    final List<String> words) {
+    for (final var word : words) if (is(tree, node, word)) return true;
+    return false;
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the item.
+   * @param  word Word that is checked.
+   * @return      Whether the item is a token that is the word.
+   */
+  private static boolean is(final Tree tree, final int node,
+    final String word) {
+    return tree.kind(node) == Tree.TOKEN
+      && tree.tokens.is(tree.reference(node), word);
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the statement, which must not be empty.
+   * @return      Index of the last child of the statement.
+   */
+  private static int last(final Tree tree, final int node) {
+    var last = tree.first(node);
+    while (tree.end(last) != tree.end(node)) last = tree.end(last);
+    return last;
+  }
+
+  /**
+   * @param  tree Tree of the source.
+   * @param  node Index of the statement.
+   * @return      Index of the child that starts the initializer of the
+   *                statement, or the end of the statement if there is none.
+   */
+  private static int initializer(final Tree tree, final int node) {
+    for (var child = tree.first(node); child < tree.end(node);
+      child = tree.end(child))
+      if (is(tree, child, "=")) return child;
+    return tree.end(node);
+  }
+
+  /**
+   * Writes the children of a statement in a range.
+   *
+   * @param output Buffer the code is written to.
+   * @param tree   Tree of the source.
+   * @param first  Index of the first written child.
+   * @param end    Index after the last written child.
+   */
+  private static void copy(final Output output, final Tree tree,
+    final int first, final int end) {
+    for (var child = first; child < end; child = tree.end(child))
+      item(output, tree, child);
+  }
+
+  /**
+   * Generates a Makefile that compiles the C files of the packages
+   * separately, and links them to an executable with the name of the built
+   * package.
+   *
+   * @param  target   Path to the directory of the generated files.
+   * @param  packages Names of the built package and the packages it imports.
+   * @param  built    Name of the built package.
+   * @return          Path to the Makefile, or error message.
+   */
+  private static Result<Path, String> makefile(final Path target,
+    final List<PhysicalName> packages, final PhysicalName built) {
+    final var objects = new ArrayList<String>(packages.size());
+    for (final var name : packages) objects.add(name.value + ".o");
+    final var output = Output.acquire();
+    try {
+      output.write("""
+        # Generated by Rainfall from the package `%s`.
+        %s%s: %s
+        \t$(CC) $(LDFLAGS) -o $@ $^ $(LDLIBS)
+
+        %%.o: %%.c %s%s
+        \t$(CC) $(CFLAGS) -c -o $@ $<
+        """.formatted(built, built, EXECUTABLE, String.join(" ", objects),
+        built, HEADER));
+      return write(target.resolve(MAKEFILE), List.of(output));
+    } finally {
+      output.release();
+    }
+  }
+
+  /**
+   * Generates the code of a package.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  name      Name of the package.
+   * @param  generated Generated package.
+   * @param  shared    Whether the types are defined in the shared header
+   *                     instead.
+   * @return           Buffer that holds the code.
+   */
+  private static Output unit(final Path directory, final PhysicalName name,
+    final Package<Tree> generated, final boolean shared) {
+    return Metrics.measure("generate", name, () -> {
+      final var event = new Events.Generate();
+      event.begin();
+      final var output = Output.acquire();
+      output.write("\n// Package `%s`.\n".formatted(name));
+      for (final var source : generated.sources()) {
+        output.write("\n// %s\n".formatted(
+          directory.relativize(source.path()).toString().replace('\\', '/')));
+        final var tree = source.model();
+        for (var node = tree.first(0); node < tree.end(0);
+          node = tree.end(node)) {
+          if (Checker.isImport(tree, node)) continue;
+          if (!shared || !isType(tree, node)) {
+            statement(output, tree, node);
+            continue;
+          }
+
+          // Leave out the types that are defined in the shared header, but
+          // define the objects that are declared with them.
+          final var next = declarators(tree, node);
+          if (next == tree.end(0)) continue;
+          if (isObject(tree, node, next)) {
+            copy(output, tree, tree.first(node), last(tree, node));
+            statement(output, tree, next);
+          }
+          node = next;
+        }
+      }
+      event.finish(name, output.size());
+      Metrics.count("generated bytes", output.size());
+      return output;
+    });
+  }
+
+  /**
+   * Writes a statement, which is ended with a semicolon unless it ends with a
+   * block.
+   *
+   * @param output Buffer the code is written to.
+   * @param tree   Tree of the source.
+   * @param node   Index of the statement.
+   */
+  private static void statement(final Output output, final Tree tree,
+    final int node) {
+    var last = Tree.TOKEN;
+    for (var child = tree.first(node); child < tree.end(node);
+      child = tree.end(child)) {
+      item(output, tree, child);
+      last = tree.kind(child);
+    }
+    if (last != Tree.BLOCK) output.write((byte) ';');
+    output.write((byte) '\n');
+  }
+
+  /**
+   * Writes a token, a group or a block.
+   *
+   * @param output Buffer the code is written to.
+   * @param tree   Tree of the source.
+   * @param node   Index of the item.
+   */
+  private static void item(final Output output, final Tree tree,
+    final int node) {
+    final var tokens = tree.tokens;
+    final var token  = tree.reference(node);
+    switch (tree.kind(node)) {
+    case Tree.TOKEN -> {
+      output.write(tokens.contents, tokens.start(token), tokens.length(token));
+      output.write((byte) ' ');
+    }
+    case Tree.GROUP -> {
+      output.write(tokens.kind(token) == Tokens.OPENING_PARENTHESIS
+        ? (byte) '('
+        : (byte) '[');
+      for (var child = tree.first(node); child < tree.end(node);
+        child = tree.end(child))
+        item(output, tree, child);
+      output.write(tokens.kind(token) == Tokens.OPENING_PARENTHESIS
+        ? (byte) ')'
+        : (byte) ']');
+      output.write((byte) ' ');
+    }
+    case Tree.BLOCK -> {
+      output.write("{\n");
+      for (var child = tree.first(node); child < tree.end(node);
+        child = tree.end(child))
+        statement(output, tree, child);
+      output.write((byte) '}');
+    }
+    default -> throw new IllegalStateException(
+      "Unexpected node kind `%d`!".formatted(tree.kind(node)));
+    }
+  }
+
+  /**
+   * Writes the buffers to a file with gathering writes, which does not copy
+   * the buffers into a single one. The file is not written if it already has
+   * the same bytes, which keeps its modification time.
+   *
+   * @param  file    Path to the written file.
+   * @param  outputs Written buffers in order.
+   * @return         Path to the written file, or error message.
+   */
+  private static Result<Path, String> write(final Path file,
+    final List<Output> outputs) {
+    final var views = new ByteBuffer[outputs.size()];
+    var       size  = 0L;
+    for (var i = 0; i < views.length; i++) {
+      views[i]  = outputs.get(i).view();
+      size     += views[i].remaining();
+    }
+
+    try {
+      if (isWritten(file, views, size)) return Result.success(file);
+      Files.createDirectories(file.getParent());
+      try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        // A gathering write might not write all the bytes at once.
+        while (size > 0) size -= channel.write(views);
+      }
+    } catch (IOException exception) {
+      return Result.failure("Could not write `%s`! %s".formatted(file,
+        exception.getMessage()));
+    }
+    return Result.success(file);
+  }
+
+  /**
+   * Compares the bytes in a file with the given buffers. The file is read in
+   * chunks instead of being mapped, as a mapped file could not be truncated
+   * safely while it is written afterwards.
+   *
+   * @param  file        Path to the compared file.
+   * @param  views       Compared buffers in order.
+   * @param  size        Total number of bytes in the buffers.
+   * @return             Whether the file has the same bytes as the buffers.
+   * @throws IOException If the file could not be read.
+   */
+  private static boolean isWritten(final Path file, final ByteBuffer[] views,
+    final long size) throws IOException {
+    if (!Files.isRegularFile(file) || Files.size(file) != size) return false;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final var chunk = ByteBuffer.allocate(1 << 16);
+      for (final var view : views) {
+        var offset = view.position();
+        while (offset < view.limit()) {
+          final var length = Math.min(chunk.capacity(), view.limit() - offset);
+          chunk.clear().limit(length);
+          while (chunk.hasRemaining())
+            if (channel.read(chunk) < 0) return false;
+          chunk.flip();
+          if (!view.slice(offset, chunk.remaining()).equals(chunk))
+            return false;
+          offset += chunk.remaining();
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Constructs a generator, which is not used as the class only has static
+   * members.
+   */
+  private Generator() {}
+
+  /**
+   * Runs all the unit tests for {@link Generator}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether the statements are copied.
+    tester.run(() -> generate(Map.of("A.tr",
+      "int main(void) { return f(1, a[2]); }"), List.of("A"), "A",
+      generated -> generated.contains(
+        "int main (void ) {\nreturn f (1 , a [2 ] ) ;\n}\n")));
+
+    // Test whether the imports are not copied.
+    tester.run(() -> generate(Map.of("A.tr", "import B; a;", "B.tr", ""),
+      List.of("B", "A"), "A", generated -> !generated.contains("import")));
+
+    // Test whether the packages are written in the given order.
+    tester.run(() -> generate(
+      Map.of("A.tr", "a;", "B/C.tr", "c;", "B/D/E.tr", "e;"), List.of("B", "A"),
+      "A", generated -> generated.indexOf("c ;") < generated.indexOf("e ;")
+        && generated.indexOf("e ;") < generated.indexOf("a ;")));
+
+    // Test whether the packages are split to files with a shared header.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B; int main(void) { return f(); }", "B.tr",
+        "int f(void) { return 0; } int g = 1; static int h;"),
+      directory -> {
+        final var target = split(directory, List.of("B", "A"), "A");
+        if (target.isFailure()) return false;
+        final var header = read(target.value().resolveSibling("A.h"));
+        return read(target.value()).contains("A: B.o A.o")
+          && read(target.value().resolveSibling("B.c"))
+            .contains("#include \"A.h\"")
+          && header.contains("int f (void ) ;")
+          && header.contains("int main (void ) ;")
+          && header.contains("extern int g ;") && !header.contains("h ;");
+      }));
+
+    // Test whether the types are defined in the shared header, which lets a
+    // package use the types and the objects of the packages it imports.
+    tester.run(() -> !Toolchain.canMake() || Tester.withFiles(Map.of("A.tr",
+      """
+      import B;
+      int main(void) {
+        struct Point p; Box b;
+        p.x = 1; p.y = 2; b.value = counter;
+        return add(p) + b.value + origin.x - 3;
+      }
+      """, "B.tr", """
+      struct Point { int x; int y; };
+      typedef struct { int value; } Box;
+      struct Origin { int x; } origin;
+      int counter = 0;
+      int add(struct Point p) { return p.x + p.y; }
+      """), directory -> {
+        final var target = split(directory, List.of("B", "A"), "A");
+        if (target.isFailure()) return false;
+        final var header = read(target.value().resolveSibling("A.h"));
+        return header.contains("struct Point {\nint x ;\nint y ;\n}")
+          && header.contains("extern struct Origin origin ;")
+          && !read(target.value().resolveSibling("B.c")).contains("{\nint x ;")
+          && Toolchain.make(target.value(), 1).isSuccess()
+          && Toolchain.execute(target.value().resolveSibling("A" + EXECUTABLE),
+            List.of(), line -> {}).isSuccess();
+      }));
+
+    // Test whether the files that did not change are not written again.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B; a;", "B.tr", "b;"), directory -> {
+        final var target = split(directory, List.of("B", "A"), "A");
+        if (target.isFailure()) return false;
+        final var file = target.value().resolveSibling("A.c");
+        try {
+          final var old = FileTime.fromMillis(0);
+          Files.setLastModifiedTime(file, old);
+          return split(directory, List.of("B", "A"), "A").isSuccess()
+            && Files.getLastModifiedTime(file).equals(old);
+        } catch (IOException exception) {
+          return false;
+        }
+      }));
+
+    // Test whether a file with the same size but other bytes is written again.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B; a;", "B.tr", "b;"), directory -> {
+        final var target = split(directory, List.of("B", "A"), "A");
+        if (target.isFailure()) return false;
+        final var file = target.value().resolveSibling("A.c");
+        try {
+          final var written = read(file);
+          Files.writeString(file, "x".repeat(written.length()));
+          return split(directory, List.of("B", "A"), "A").isSuccess()
+            && read(file).equals(written);
+        } catch (IOException exception) {
+          return false;
+        }
+      }));
+  }
+
+  /**
+   * Splits a package in a workspace to separate files.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  packages  Names of the generated packages in order.
+   * @param  built     Name of the built package.
+   * @return           Path to the generated Makefile, or error message.
+   */
+  private static Result<Path, String> split(final Path directory,
+    final List<String> packages, final String built) {
+    final var workspace = Loader.load(ForkJoinPool.commonPool(), directory,
+      contents -> Lexer.lex(contents).flatMap(Parser::parse));
+    if (workspace.isFailure()) return workspace.propagate();
+    final var names = new ArrayList<PhysicalName>();
+    for (final var name : packages) names.add(PhysicalName.of(name).value());
+    return split(ForkJoinPool.commonPool(), directory, workspace.value(), names,
+      PhysicalName.of(built).value());
+  }
+
+  /**
+   * Reads a generated file.
+   *
+   * @param  file Path to the read file.
+   * @return      Text in the file, or empty if it could not be read.
+   */
+  private static String read(final Path file) {
+    try {
+      return Files.readString(file, StandardCharsets.UTF_8);
+    } catch (IOException exception) {
+      return "";
+    }
+  }
+
+  /**
+   * Generates a package in a workspace that is created with the given files in
+   * a temporary directory.
+   *
+   * @param  files    Texts of the created files mapped to their relative
+   *                    paths.
+   * @param  packages Names of the generated packages in order.
+   * @param  built    Name of the built package.
+   * @param  test     Test that is run on the generated code.
+   * @return          Result of the test.
+   */
+  private static boolean generate(final Map<String, String> files,
+    final List<String> packages, final String built,
+    final Predicate<String> test) {
+    return Tester.withFiles(files, directory -> {
+      final var workspace = Loader.load(ForkJoinPool.commonPool(), directory,
+        contents -> Lexer.lex(contents).flatMap(Parser::parse));
+      if (workspace.isFailure()) return false;
+      final var names = new ArrayList<PhysicalName>();
+      for (final var name : packages) names.add(PhysicalName.of(name).value());
+      final var generated = generate(ForkJoinPool.commonPool(), directory,
+        workspace.value(), names, PhysicalName.of(built).value());
+      if (generated.isFailure()) return false;
+      try {
+        return test.test(Files.readString(generated.value(),
+          StandardCharsets.UTF_8));
+      } catch (IOException exception) {
+        return false;
+      }
+    });
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Generator}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark generating 16 packages that are each about a megabyte.
+    final var files = new HashMap<String, String>();
+    final var names = new ArrayList<PhysicalName>();
+    for (var i = 0; i < 16; i++) {
+      files.put("P%d.tr".formatted(i),
+        "int f(int a) { return g(a, b[1234]) + \"text\"; } // Comment\n"
+          .repeat(16000));
+      names.add(PhysicalName.of("P%d".formatted(i)).value());
+    }
+    Tester.withFiles(files, directory -> {
+      final var workspace = Loader.load(ForkJoinPool.commonPool(), directory,
+        contents -> Lexer.lex(contents).flatMap(Parser::parse)).value();
+      var       size      = 0L;
+      for (final var name : names) size += workspace.packages().get(name)
+        .sources().get(0).model().tokens.contents.size();
+      bencher.run("Generator.generate 16 MB", size,
+        () -> generate(ForkJoinPool.commonPool(), directory, workspace, names,
+          names.get(names.size() - 1)));
+      return true;
+    });
+  }
+}
@@ -0,0 +1,230 @@
+package rainfall.generator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+
+/**
+ * Growable buffer that generated code is written into. Buffers are direct,
+ * which lets them be written to a file without copying, and are pooled; thus,
+ * the memory is reused between the generated units and between the builds.
+ *
+ * @author calestialgem
+ */
+public final class Output {
+  /**
+   * Number of bytes a new buffer can hold before growing.
+   */
+  private static final int CAPACITY = 1 << 16;
+
+  /**
+   * Maximum number of bytes a buffer can hold, which is a bit less than the
+   * largest array size as some virtual machines reserve header words in it.
+   */
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+  /**
+   * Maximum number of the pooled buffers. More buffers than there are threads
+   * generating at the same time are not reused.
+   */
+  private static final int POOLED = 64;
+
+  /**
+   * Buffers that are released and can be acquired again. Only the buffers
+   * that did not grow are pooled; thus, the pool holds a bounded amount of
+   * memory.
+   */
+  private static final ArrayBlockingQueue<Output> POOL =
+    new ArrayBlockingQueue<>(POOLED);
+
+  /**
+   * Written bytes, which are between the start and the position.
+   */
+  private ByteBuffer bytes;
+
+  /**
+   * Gives an empty buffer, which is reused from the pool if there is one.
+   * Must be released after the written bytes are used.
+   *
+   * @return Acquired buffer.
+   */
+  public static Output acquire() {
+    final var pooled = POOL.poll();
+    if (pooled != null) return pooled;
+    return new Output(CAPACITY);
+  }
+
+  /**
+   * Constructs an empty buffer.
+   *
+   * @param capacity Number of bytes that can be written before growing.
+   */
+  private Output(final int capacity) {
+    bytes = ByteBuffer.allocateDirect(capacity);
+  }
+
+  /**
+   * Empties the buffer and returns it to the pool, unless it grew or the pool
+   * is full. The buffer must not be used afterwards.
+   */
+  public void release() {
+    if (bytes.capacity() > CAPACITY) return;
+    bytes.clear();
+    POOL.offer(this);
+  }
+
+  /**
+   * Writes a byte.
+   *
+   * @param  written Written byte.
+   * @return         Itself.
+   */
+  public Output write(final byte written) {
+    reserve(1);
+    bytes.put(written);
+    return this;
+  }
+
+  /**
+   * Writes the remaining bytes in a buffer.
+   *
+   * @param  written Buffer of the written bytes.
+   * @return         Itself.
+   */
+  public Output write(final ByteBuffer written) {
+    reserve(written.remaining());
+    bytes.put(written);
+    return this;
+  }
+
+  /**
+   * Writes a range of the contents of a source.
+   *
+   * @param  contents Contents of the source.
+   * @param  start    Index of the first written byte.
+   * @param  length   Number of written bytes.
+   * @return          Itself.
+   */
+  public Output write(final Contents contents, final int start,
+    final int length) {
+    reserve(length);
+    contents.copy(start, length, bytes);
+    return this;
+  }
+
+  /**
+   * Writes a text as UTF-8.
+   *
+   * @param  written Written text.
+   * @return         Itself.
+   */
+  public Output write(final String written) {
+    return write(ByteBuffer.wrap(written.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * @return Number of written bytes.
+   */
+  public int size() { return bytes.position(); }
+
+  /**
+   * Views the written bytes without copying them. The view becomes invalid
+   * when the buffer is written to or released.
+   *
+   * @return Buffer whose remaining bytes are the written ones.
+   */
+  public ByteBuffer view() { return bytes.duplicate().flip(); }
+
+  /**
+   * Makes sure the given number of bytes can be written by growing if
+   * necessary.
+   *
+   * @param count Number of bytes that will be written.
+   */
+  private void reserve(final int count) {
+    if (bytes.remaining() >= count) return;
+
+    // Grow by doubling, or to the required size if doubling is not enough.
+    // Sizes are calculated as longs such that they do not overflow.
+    final var required = (long) bytes.position() + count;
+    if (required > MAX_CAPACITY)
+      throw new OutOfMemoryError("Generated code is too big!");
+    final var capacity = Math.max((int) required,
+      (int) Math.min(MAX_CAPACITY, 2L * bytes.capacity()));
+    final var grown    = ByteBuffer.allocateDirect(capacity);
+    grown.put(bytes.flip());
+    bytes = grown;
+  }
+
+  /**
+   * Runs all the unit tests for {@link Output}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether the written bytes are viewed in order.
+    tester.run(() -> {
+      final var output = acquire();
+      output.write("ab").write((byte) 'c');
+      final var viewed = StandardCharsets.UTF_8.decode(output.view())
+        .toString();
+      output.release();
+      return viewed.equals("abc");
+    });
+
+    // Test whether a range of the contents is written.
+    tester.run(() -> {
+      final var output = acquire();
+      output.write(Contents.wrap(Path.of("Test.tr"),
+        "abcd".getBytes(StandardCharsets.UTF_8)), 1, 2);
+      final var viewed = StandardCharsets.UTF_8.decode(output.view())
+        .toString();
+      output.release();
+      return viewed.equals("bc");
+    });
+
+    // Test whether the buffer grows.
+    tester.run(() -> {
+      final var output = new Output(2);
+      output.write("abcde").write("f".repeat(CAPACITY));
+      return output.size() == 5 + CAPACITY
+        && output.view().get(4) == 'e';
+    });
+
+    // Test whether the buffer grows to the required size at once.
+    tester.run(() -> {
+      final var output = new Output(2);
+      output.write("f".repeat(CAPACITY));
+      return output.bytes.capacity() == CAPACITY;
+    });
+
+    // Test whether a grown buffer is not pooled.
+    tester.run(() -> {
+      final var output = acquire();
+      output.write("f".repeat(CAPACITY + 1));
+      output.release();
+      return !POOL.contains(output);
+    });
+
+    // Test whether the pool is bounded.
+    tester.run(() -> {
+      for (var i = 0; i <= POOLED; i++) new Output(CAPACITY).release();
+      return POOL.size() == POOLED;
+    });
+
+    // Test whether a released buffer is empty when it is acquired again.
+    tester.run(() -> {
+      final var output = acquire();
+      output.write("abc");
+      output.release();
+      final var reused = acquire();
+      final var empty  = reused.size() == 0;
+      reused.release();
+      return empty;
+    });
+  }
+}
@@ -0,0 +1,452 @@
+package rainfall.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Tree;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Loader;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Workspace;
+
+/**
+ * Hash of the inputs of an executable, which is stored next to it after it is
+ * built. The executable is up to date if the hash of the current inputs is
+ * the same as the stored one; thus, it can be run without checking the
+ * workspace and building it again.
+ *
+ * <p>
+ * Inputs are the version of the generated code, the configuration of the
+ * build and the contents of the sources of the package and the packages it
+ * imports, as they were loaded. The stamp of these inputs is also stored when
+ * the tests of the package pass, which lets the tests be skipped until one of
+ * the inputs changes.
+ *
+ * <p>
+ * The stamp of an executable is stored with the hash of the configuration and
+ * the files the sources were loaded from, which are the sources and their
+ * directories with their sizes and modification times. An executable whose
+ * files did not change can be run without loading the workspace at all, like
+ * {@code make} does. A file that was modified right before the stamp was
+ * stored might have changed again without changing its modification time;
+ * thus, it is never considered unchanged, and the workspace is loaded to
+ * compare the hashes.
+ *
+ * @author calestialgem
+ */
+public final class Stamp {
+  /**
+   * Extension of the stored stamps.
+   */
+  public static final String EXTENSION = ".stamp";
+
+  /**
+   * Extension of the stored stamps of the passed tests.
+   */
+  public static final String PASSED = ".passed";
+
+  /**
+   * Microseconds before storing a stamp where a modification might not change
+   * the modification time of a file, as file systems store the times with a
+   * coarse precision.
+   */
+  private static final long RACY = TimeUnit.SECONDS.toMicros(2);
+
+  /**
+   * Hashes the inputs of a package in a loaded workspace.
+   *
+   * @param  directory     Path to the workspace directory.
+   * @param  workspace     Loaded workspace.
+   * @param  packages      Names of the package and the packages it imports.
+   * @param  configuration Description of the build configuration.
+   * @return               Hash of the inputs.
+   */
+  public static String of(final Path directory,
+    final Workspace<Tree> workspace, final List<PhysicalName> packages,
+    final String configuration) {
+    final var digest = digest(configuration);
+    for (final var name : packages) {
+      digest.update((byte) 0);
+      digest.update(name.value.getBytes(StandardCharsets.UTF_8));
+      for (final var source : workspace.packages().get(name).sources()) {
+        final var contents = source.model().tokens.contents;
+        digest.update((byte) 0);
+        digest.update(directory.relativize(source.path()).toString()
+          .replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(contents.slice(0, contents.size()));
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Records the files the inputs of a package in a loaded workspace are loaded
+   * from, which are stored with the stamp of its executable.
+   *
+   * @param  directory     Path to the workspace directory.
+   * @param  workspace     Loaded workspace.
+   * @param  packages      Names of the package and the packages it imports.
+   * @param  configuration Description of the build configuration.
+   * @return               Hash of the configuration followed by the size, the
+   *                         modification time and the relative path of each
+   *                         file on its own line, or empty if the files
+   *                         cannot be recorded.
+   */
+  public static String inputs(final Path directory,
+    final Workspace<Tree> workspace, final List<PhysicalName> packages,
+    final String configuration) {
+    final var inputs      = new StringBuilder(
+      HexFormat.of().formatHex(digest(configuration).digest()));
+    final var directories = new TreeSet<Path>();
+    for (final var name : packages)
+      for (final var source : workspace.packages().get(name).sources()) {
+        // Sources that are not read from a file cannot be checked.
+        final var contents = source.model().tokens.contents;
+        if (contents.modified == null) return "";
+        record(inputs, directory, source.path(), contents.size(),
+          micros(contents.modified));
+        directories.add(source.path().getParent());
+      }
+
+    // Record the directories, which are modified when a source is added or
+    // removed.
+    for (final var recorded : directories) {
+      try {
+        record(inputs, directory, recorded, -1,
+          micros(Files.getLastModifiedTime(recorded)));
+      } catch (IOException exception) {
+        return "";
+      }
+    }
+    return inputs.toString();
+  }
+
+  /**
+   * Records a file on its own line.
+   *
+   * @param inputs    Recorded files.
+   * @param directory Path to the workspace directory.
+   * @param file      Path to the recorded file.
+   * @param size      Number of bytes in the file, or -1 for a directory.
+   * @param modified  Modification time of the file in microseconds since the
+   *                    epoch.
+   */
+  private static void record(final StringBuilder inputs, final Path directory,
+    final Path file, final long size, final long modified) {
+    inputs.append('\n').append(size).append(' ').append(modified).append(' ')
+      .append(directory.relativize(file).toString().replace('\\', '/'));
+  }
+
+  /**
+   * Starts hashing the inputs with the ones that are not sources.
+   *
+   * @param  configuration Description of the build configuration.
+   * @return               Digest that hashed the version and the
+   *                         configuration.
+   */
+  private static MessageDigest digest(final String configuration) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exception) {
+      // All Java platforms are required to implement SHA-256.
+      throw new RuntimeException(exception);
+    }
+    digest.update(ByteBuffer.allocate(Integer.BYTES)
+      .putInt(0, Generator.VERSION));
+    digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+    return digest;
+  }
+
+  /**
+   * Checks whether an executable is up to date.
+   *
+   * @param  executable Path to the executable.
+   * @param  stamp      Hash of the current inputs of the executable.
+   * @return            Whether the executable exists and the stored hash is
+   *                      the same as the given one.
+   */
+  public static boolean isFresh(final Path executable, final String stamp) {
+    if (!Files.isRegularFile(executable)) return false;
+    try (var reader = Files.newBufferedReader(file(executable, EXTENSION),
+      StandardCharsets.UTF_8)) {
+      return stamp.equals(reader.readLine());
+    } catch (IOException exception) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether an executable is up to date without loading the
+   * workspace, which is when none of the files its inputs were loaded from
+   * changed since it was built.
+   *
+   * @param  directory     Path to the workspace directory.
+   * @param  executable    Path to the executable.
+   * @param  configuration Description of the current build configuration.
+   * @return               Whether the executable exists, and it was built
+   *                         with the same configuration from the recorded
+   *                         files that did not change.
+   */
+  public static boolean isUnchanged(final Path directory,
+    final Path executable, final String configuration) {
+    if (!Files.isRegularFile(executable)) return false;
+    final var file = file(executable, EXTENSION);
+    try {
+      final var stored = micros(Files.getLastModifiedTime(file));
+      final var lines  = Files.readAllLines(file, StandardCharsets.UTF_8);
+      if (lines.size() < 3 || !lines.get(1)
+        .equals(HexFormat.of().formatHex(digest(configuration).digest())))
+        return false;
+      for (final var line : lines.subList(2, lines.size())) {
+        final var fields   = line.split(" ", 3);
+        if (fields.length != 3) return false;
+        final var size     = Long.parseLong(fields[0]);
+        final var modified = Long.parseLong(fields[1]);
+        if (modified + RACY >= stored) return false;
+        final var attributes = Files.readAttributes(
+          directory.resolve(fields[2]), BasicFileAttributes.class);
+        if (size == -1 ? !attributes.isDirectory()
+          : !attributes.isRegularFile() || attributes.size() != size)
+          return false;
+        if (micros(attributes.lastModifiedTime()) != modified) return false;
+      }
+      return true;
+    } catch (IOException | NumberFormatException exception) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether the tests of a package passed with the current inputs.
+   *
+   * @param  executable Path to the executable of the package.
+   * @param  stamp      Hash of the current inputs of the package.
+   * @return            Whether the stored hash of the last pass is the same
+   *                      as the given one.
+   */
+  public static boolean isPassed(final Path executable, final String stamp) {
+    return isStored(file(executable, PASSED), stamp);
+  }
+
+  /**
+   * Checks whether a stored hash is the same as the given one.
+   *
+   * @param  file  Path to the stored hash.
+   * @param  stamp Compared hash.
+   * @return       Whether the file exists and has the given hash.
+   */
+  private static boolean isStored(final Path file, final String stamp) {
+    try {
+      return Files.readString(file, StandardCharsets.UTF_8).equals(stamp);
+    } catch (IOException exception) {
+      return false;
+    }
+  }
+
+  /**
+   * Stores the hash of the inputs of an executable next to it.
+   *
+   * @param  executable Path to the executable.
+   * @param  stamp      Hash of the inputs the executable is built from.
+   * @param  inputs     Recorded files the inputs are loaded from.
+   * @return            Success, or error message.
+   */
+  public static Result<Void, String> store(final Path executable,
+    final String stamp, final String inputs) {
+    return write(file(executable, EXTENSION), stamp + '\n' + inputs);
+  }
+
+  /**
+   * Stores the hash of the inputs of a package whose tests passed next to its
+   * executable.
+   *
+   * @param  executable Path to the executable of the package.
+   * @param  stamp      Hash of the inputs the tests passed with.
+   * @return            Success, or error message.
+   */
+  public static Result<Void, String> pass(final Path executable,
+    final String stamp) {
+    return write(file(executable, PASSED), stamp);
+  }
+
+  /**
+   * Stores a hash to a file.
+   *
+   * @param  file  Path to the stored hash.
+   * @param  stamp Stored hash.
+   * @return       Success, or error message.
+   */
+  private static Result<Void, String> write(final Path file,
+    final String stamp) {
+    try {
+      Files.writeString(file, stamp, StandardCharsets.UTF_8);
+      return Result.success();
+    } catch (IOException exception) {
+      return Result.failure("Could not store the stamp `%s`! %s"
+        .formatted(file, exception.getLocalizedMessage()));
+    }
+  }
+
+  /**
+   * @param  time Time of a file.
+   * @return      Time in microseconds since the epoch.
+   */
+  private static long micros(final FileTime time) {
+    return time.to(TimeUnit.MICROSECONDS);
+  }
+
+  /**
+   * @param  executable Path to the executable.
+   * @param  extension  Extension of the stamp.
+   * @return            Path to the stamp of the executable.
+   */
+  private static Path file(final Path executable, final String extension) {
+    return executable.resolveSibling(executable.getFileName() + extension);
+  }
+
+  /**
+   * Constructs a stamp, which is not used as the class only has static
+   * members.
+   */
+  private Stamp() {}
+
+  /**
+   * Runs all the unit tests for {@link Stamp}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether the configuration changes the stamp.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a;"), directory -> {
+      final var workspace = load(directory);
+      return !of(directory, workspace, List.of(name("A")), "")
+        .equals(of(directory, workspace, List.of(name("A")), "split"));
+    }));
+
+    // Test whether a stored stamp makes the executable fresh.
+    tester.run(() -> Tester.withFiles(Map.of("A", ""), directory -> {
+      final var executable = directory.resolve("A");
+      return !isFresh(executable, "1")
+        && store(executable, "1", "").isSuccess() && isFresh(executable, "1")
+        && !isFresh(executable, "2");
+    }));
+
+    // Test whether a passed stamp is stored separately.
+    tester.run(() -> Tester.withFiles(Map.of("A", ""), directory -> {
+      final var executable = directory.resolve("A");
+      return store(executable, "1", "").isSuccess()
+        && !isPassed(executable, "1")
+        && pass(executable, "2").isSuccess() && isPassed(executable, "2")
+        && isFresh(executable, "1");
+    }));
+
+    // Test whether the stamp of a package only changes with its inputs.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B.tr", "b;", "C.tr", "c;"), directory -> {
+        final var packages = List.of(name("B"), name("A"));
+        final var before   =
+          of(directory, load(directory), packages, "");
+        final var same     =
+          before.equals(of(directory, load(directory), packages, ""));
+        try {
+          Files.writeString(directory.resolve("C.tr"), "d;");
+          final var unrelated =
+            before.equals(of(directory, load(directory), packages, ""));
+          Files.writeString(directory.resolve("B.tr"), "d;");
+          final var imported =
+            before.equals(of(directory, load(directory), packages, ""));
+          return same && unrelated && !imported;
+        } catch (IOException exception) {
+          return false;
+        }
+      }));
+
+    // Test whether a missing executable is not fresh.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", ""), directory -> {
+      final var executable = directory.resolve("A");
+      return store(executable, "1", "").isSuccess()
+        && !isFresh(executable, "1");
+    }));
+
+    // Test whether an executable is unchanged until one of the recorded files
+    // or the configuration changes.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B/C.tr", "b;", "D.tr", "d;", "X/E", ""),
+      directory -> {
+        final var executable = directory.resolve("X/E");
+        final var packages   = List.of(name("B"), name("A"));
+        try {
+          // Age the files; thus, they are not modified right before storing.
+          final var old = FileTime.fromMillis(0);
+          for (final var file : List.of("A.tr", "B/C.tr", "B", "."))
+            Files.setLastModifiedTime(directory.resolve(file), old);
+          final var inputs = inputs(directory, load(directory), packages, "");
+          if (!store(executable, "1", inputs).isSuccess()
+            || !isUnchanged(directory, executable, "")
+            || isUnchanged(directory, executable, "split"))
+            return false;
+          Files.writeString(directory.resolve("B/F.tr"), "f;");
+          final var added = isUnchanged(directory, executable, "");
+          Files.delete(directory.resolve("B/F.tr"));
+          Files.setLastModifiedTime(directory.resolve("B"), old);
+          final var removed = isUnchanged(directory, executable, "");
+          Files.writeString(directory.resolve("B/C.tr"), "c;");
+          Files.setLastModifiedTime(directory.resolve("B/C.tr"), old);
+          final var same = isUnchanged(directory, executable, "");
+          Files.writeString(directory.resolve("B/C.tr"), "cc;");
+          Files.setLastModifiedTime(directory.resolve("B/C.tr"), old);
+          return !added && removed && same
+            && !isUnchanged(directory, executable, "");
+        } catch (IOException exception) {
+          return false;
+        }
+      }));
+
+    // Test whether a file modified right before storing is not unchanged.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a;", "E", ""),
+      directory -> {
+        final var executable = directory.resolve("E");
+        final var inputs     =
+          inputs(directory, load(directory), List.of(name("A")), "");
+        return store(executable, "1", inputs).isSuccess()
+          && !isUnchanged(directory, executable, "");
+      }));
+  }
+
+  /**
+   * Loads a workspace for testing.
+   *
+   * @param  directory Path to the workspace directory.
+   * @return           Loaded workspace.
+   */
+  private static Workspace<Tree> load(final Path directory) {
+    return Loader.load(ForkJoinPool.commonPool(), directory,
+      contents -> Lexer.lex(contents).flatMap(Parser::parse)).value();
+  }
+
+  /**
+   * @param  name Valid name.
+   * @return      Physical name.
+   */
+  private static PhysicalName name(final String name) {
+    return PhysicalName.of(name).value();
+  }
+}
@@ -0,0 +1,329 @@
+package rainfall.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+
+/**
+ * Native tools that compile the generated C code and run the executables.
+ * The C compiler is taken from the {@code CC} environment variable like
+ * {@code make} does, and is {@code cc} if it is not set. Similarly, the flags
+ * are taken from the {@code CFLAGS}, {@code LDFLAGS} and {@code LDLIBS}
+ * environment variables. Like in {@code make}, the variables are split to
+ * words at whitespace; thus, {@code CC} can be a command with arguments such
+ * as {@code ccache gcc}.
+ *
+ * @author calestialgem
+ */
+public final class Toolchain {
+  /**
+   * Versions of the C compilers mapped to their commands, which are asked
+   * once in a process.
+   */
+  private static final Map<List<String>, String> VERSIONS =
+    new ConcurrentHashMap<>();
+
+  /**
+   * Compiles a generated C file to an executable.
+   *
+   * @param  generated  Path to the generated C file.
+   * @param  executable Path to the compiled executable.
+   * @return            Success, or error message.
+   */
+  public static Result<Void, String> compile(final Path generated,
+    final Path executable) {
+    return compile(generated, executable, null);
+  }
+
+  /**
+   * Compiles a generated C file to an executable, and gives the output of the
+   * C compiler line by line.
+   *
+   * @param  generated  Path to the generated C file.
+   * @param  executable Path to the compiled executable.
+   * @param  output     Consumer of the lines, or null for sharing the
+   *                      standard streams of the compiler.
+   * @return            Success, or error message.
+   */
+  public static Result<Void, String> compile(final Path generated,
+    final Path executable, final Consumer<String> output) {
+    try {
+      Files.createDirectories(executable.getParent());
+    } catch (IOException exception) {
+      return Result.failure("Could not create the directory of `%s`! %s"
+        .formatted(executable, exception.getLocalizedMessage()));
+    }
+    // Pass the flags like the implicit rule of make does.
+    final var command = new ArrayList<String>();
+    command.addAll(compiler());
+    command.addAll(flags("CFLAGS"));
+    command.addAll(flags("LDFLAGS"));
+    command.addAll(List.of("-o", executable.toString(), generated.toString()));
+    command.addAll(flags("LDLIBS"));
+    return finish(command, output);
+  }
+
+  /**
+   * Compiles the C files generated by splitting with their Makefile, which
+   * compiles the files in parallel.
+   *
+   * @param  makefile Path to the generated Makefile.
+   * @param  jobs     Maximum number of the files that are compiled at the
+   *                    same time.
+   * @return          Success, or error message.
+   */
+  public static Result<Void, String> make(final Path makefile,
+    final int jobs) {
+    return finish(List.of("make", "-s", "-j", Integer.toString(jobs), "-C",
+      makefile.getParent().toString()), null);
+  }
+
+  /**
+   * Runs an executable that shares the standard streams.
+   *
+   * @param  executable Path to the executable.
+   * @param  passed     Arguments passed to the executable.
+   * @return            Code the executable exited with, or error message if
+   *                      it could not be run.
+   */
+  public static Result<Integer, String> run(final Path executable,
+    final List<String> passed) {
+    return start(command(executable, passed), null);
+  }
+
+  /**
+   * Runs an executable, and gives its output line by line. The standard
+   * output and error of the executable are given together in order.
+   *
+   * @param  executable Path to the executable.
+   * @param  passed     Arguments passed to the executable.
+   * @param  output     Consumer of the lines, or null for sharing the
+   *                      standard streams of the compiler.
+   * @return            Success, or error message.
+   */
+  public static Result<Void, String> execute(final Path executable,
+    final List<String> passed, final Consumer<String> output) {
+    return finish(command(executable, passed), output);
+  }
+
+  /**
+   * @param  executable Path to the executable.
+   * @param  passed     Arguments passed to the executable.
+   * @return            Command that runs the executable.
+   */
+  private static List<String> command(final Path executable,
+    final List<String> passed) {
+    final var command = new ArrayList<String>(passed.size() + 1);
+    command.add(executable.toAbsolutePath().toString());
+    command.addAll(passed);
+    return command;
+  }
+
+  /**
+   * @return Program that runs the C compiler and its arguments.
+   */
+  public static List<String> compiler() {
+    final var compiler = flags("CC");
+    if (compiler.isEmpty()) return List.of("cc");
+    return compiler;
+  }
+
+  /**
+   * @return Whether the program that runs the C compiler can be found.
+   */
+  public static boolean isAvailable() {
+    final var path = System.getenv("PATH");
+    return isAvailable(compiler(), path == null ? "" : path);
+  }
+
+  /**
+   * @return Whether the C compiler and {@code make}, which compiles the split
+   *           files, can be found.
+   */
+  public static boolean canMake() {
+    final var path = System.getenv("PATH");
+    return isAvailable() && isAvailable(List.of("make"), path == null
+      ? ""
+      : path);
+  }
+
+  /**
+   * Finds the program of a command like a shell does. A program that is given
+   * with its directory is checked directly; otherwise, it is searched in the
+   * directories of the path.
+   *
+   * @param  command Program and its arguments.
+   * @param  path    Directories separated by the path separator.
+   * @return         Whether the program is an executable file.
+   */
+  private static boolean isAvailable(final List<String> command,
+    final String path) {
+    final var program = Path.of(command.get(0));
+    if (program.isAbsolute() || program.getNameCount() > 1)
+      return Files.isExecutable(program);
+    for (final var entry : path.split(File.pathSeparator))
+      if (!entry.isEmpty()
+        && Files.isExecutable(Path.of(entry).resolve(program)))
+        return true;
+    return false;
+  }
+
+  /**
+   * Describes the tools and the flags that change the compiled executables;
+   * thus, an executable compiled with other ones is stale.
+   *
+   * @return Command that runs the C compiler, its version and the flags.
+   */
+  public static String identity() {
+    final var compiler = compiler();
+    final var version  = VERSIONS.computeIfAbsent(compiler, Toolchain::version);
+    return "compiler=%s version=%s cflags=%s ldflags=%s ldlibs=%s".formatted(
+      String.join(" ", compiler), version,
+      flags("CFLAGS"), flags("LDFLAGS"), flags("LDLIBS"));
+  }
+
+  /**
+   * Asks the version of a C compiler.
+   *
+   * @param  compiler Program that runs the C compiler and its arguments.
+   * @return          First line the compiler prints for its version, or empty
+   *                    if the compiler could not be run.
+   */
+  private static String version(final List<String> compiler) {
+    final var command = new ArrayList<String>(compiler);
+    command.add("--version");
+    final var lines  = new ArrayList<String>();
+    final var result = finish(command, lines::add);
+    if (result.isFailure() || lines.isEmpty()) return "";
+    return lines.get(0);
+  }
+
+  /**
+   * @param  variable Name of the environment variable that has the flags.
+   * @return          Flags separated by whitespace, which are empty if the
+   *                    variable is not set.
+   */
+  private static List<String> flags(final String variable) {
+    final var flags = System.getenv(variable);
+    if (flags == null || flags.isBlank()) return List.of();
+    return List.of(flags.strip().split("\\s+"));
+  }
+
+  /**
+   * Starts a process, and waits for it to finish successfully.
+   *
+   * @param  command Program and its arguments.
+   * @param  output  Consumer of the lines of the output, or null for sharing
+   *                   the standard streams of the compiler.
+   * @return         Success, or error message if the process could not be
+   *                   started or it exited with a code other than zero.
+   */
+  private static Result<Void, String> finish(final List<String> command,
+    final Consumer<String> output) {
+    final var code = start(command, output);
+    if (code.isFailure()) return code.propagate();
+    if (code.value() == 0) return Result.success();
+    return Result.failure("`%s` exited with code %d!"
+      .formatted(command.get(0), code.value()));
+  }
+
+  /**
+   * Starts a process, and waits for it to finish. The output of the process
+   * is read in the current thread; thus, the process does not block when the
+   * output is more than what the operating system buffers.
+   *
+   * @param  command Program and its arguments.
+   * @param  output  Consumer of the lines of the output, or null for sharing
+   *                   the standard streams of the compiler.
+   * @return         Code the process exited with, or error message if it
+   *                   could not be started.
+   */
+  private static Result<Integer, String> start(final List<String> command,
+    final Consumer<String> output) {
+    final var builder = new ProcessBuilder(command);
+    if (output == null) builder.inheritIO();
+    else builder.redirectErrorStream(true);
+    try {
+      final var process = builder.start();
+      // Close the input of a process whose output is consumed, as it does
+      // not interact with the user.
+      if (output != null) try (var reader = process.inputReader()) {
+        process.getOutputStream().close();
+        for (var line = reader.readLine(); line != null;
+          line = reader.readLine())
+          output.accept(line);
+      }
+      return Result.success(process.waitFor());
+    } catch (IOException exception) {
+      return Result.failure("Could not start `%s`! %s"
+        .formatted(command.get(0), exception.getLocalizedMessage()));
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return Result.failure("Interrupted while waiting for `%s`!"
+        .formatted(command.get(0)));
+    }
+  }
+
+  /**
+   * Constructs a toolchain, which is not used as the class only has static
+   * members.
+   */
+  private Toolchain() {}
+
+  /**
+   * Runs all the unit tests for {@link Toolchain}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a missing executable is reported.
+    tester.run(() -> run(Path.of("Missing", "Executable"), List.of())
+      .isFailure());
+
+    // Test whether the identity of the toolchain is the same in a process.
+    tester.run(() -> identity().equals(identity())
+      && identity().startsWith(
+        "compiler=%s ".formatted(String.join(" ", compiler()))));
+
+    // Test whether only the first word of the compiler is the program, which
+    // is checked directly when it is absolute and searched in the path
+    // otherwise.
+    tester.run(() -> {
+      final var shell = Path.of("/bin/sh");
+      if (!Files.isExecutable(shell)) return true;
+      return isAvailable(List.of(shell.toString(), "-e"), "")
+        && isAvailable(List.of("sh", "-e"), "/missing" + File.pathSeparator
+          + "/bin")
+        && !isAvailable(List.of("missing-compiler"), "/bin")
+        && !isAvailable(List.of("/missing/sh"), "/bin");
+    });
+
+    // Test whether the output of an executable is given line by line.
+    tester.run(() -> {
+      final var shell = Path.of("/bin/sh");
+      if (!Files.isExecutable(shell)) return true;
+      final var lines = new ArrayList<String>();
+      return execute(shell, List.of("-c", "echo a; echo b 1>&2"), lines::add)
+        .isSuccess() && lines.equals(List.of("a", "b"));
+    });
+
+    // Test whether the code of a run executable is given, but the one of an
+    // executable whose output is consumed is reported.
+    tester.run(() -> {
+      final var shell = Path.of("/bin/sh");
+      if (!Files.isExecutable(shell)) return true;
+      final var code = run(shell, List.of("-c", "exit 3"));
+      return code.isSuccess() && code.value() == 3
+        && execute(shell, List.of("-c", "exit 3"), line -> {}).isFailure();
+    });
+  }
+}
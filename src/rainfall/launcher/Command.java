@@ -53,4 +53,22 @@ public sealed interface Command {
    * @author        calestialgem
    */
   record Run(PhysicalName run, List<String> passed) implements Command {}
+
+  /**
+   * Keeping the compiler running in the background, which does the commands
+   * that are forwarded from the other launches in the same workspace.
+   *
+   * @author calestialgem
+   */
+  record Serve() implements Command {}
+
+  /**
+   * Keeping the workspace loaded, and checking the packages again whenever
+   * they change.
+   *
+   * @param  watched Packages that are asked to be checked. Checks all the
+   *                   packages if its empty.
+   * @author         calestialgem
+   */
+  record Watch(List<PhysicalName> watched) implements Command {}
 }
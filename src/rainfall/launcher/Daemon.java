@@ -0,0 +1,476 @@
+package rainfall.launcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import rainfall.utility.Box;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.PhysicalName;
+
+/**
+ * Compiler that keeps running in the background, which does the commands
+ * forwarded by the other launches in the same workspace. Saves the time spent
+ * while starting and warming up the virtual machine for each launch. The
+ * commands are forwarded over a Unix domain socket in the workspace.
+ *
+ * @author calestialgem
+ */
+public final class Daemon {
+  /**
+   * Path to the socket relative to the workspace directory.
+   */
+  public static final Path SOCKET = Path.of(".rainfall", "daemon.socket");
+
+  /**
+   * Tag of a forwarded check command.
+   */
+  private static final byte CHECK = 0;
+
+  /**
+   * Tag of a forwarded test command.
+   */
+  private static final byte TEST = 1;
+
+  /**
+   * Tag of a forwarded build command.
+   */
+  private static final byte BUILD = 2;
+
+  /**
+   * Maximum number of the packages in a forwarded command. Counts and lengths
+   * are checked before anything is allocated for them; thus, a corrupt or
+   * hostile client cannot make the daemon run out of memory.
+   */
+  private static final int PACKAGES = 1 << 16;
+
+  /**
+   * Maximum number of the bytes in a forwarded package name.
+   */
+  private static final int NAME = 1 << 12;
+
+  /**
+   * Maximum number of the bytes in the error message of a forwarded command.
+   */
+  private static final int MESSAGE = 1 << 26;
+
+  /**
+   * Number of seconds a client has for sending its command before it is
+   * disconnected.
+   */
+  private static final long TIMEOUT = 10;
+
+  /**
+   * Serves the commands forwarded to the workspace of the given launcher, until
+   * the process is stopped.
+   *
+   * @param  launcher Launcher with the options that are used for launching the
+   *                    forwarded commands.
+   * @return          Error message, as the daemon only returns when it fails.
+   */
+  static Result<Void, String> serve(final Launcher launcher) {
+    final var socket = launcher.directory().resolve(SOCKET);
+    try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      // Remove the socket left by a daemon that was not stopped cleanly.
+      Files.createDirectories(socket.getParent());
+      if (Files.exists(socket) && connect(socket).isEmpty())
+        Files.delete(socket);
+      server.bind(UnixDomainSocketAddress.of(socket));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          Files.deleteIfExists(socket);
+        } catch (IOException exception) {
+          // Ignore, the next daemon removes it.
+        }
+      }));
+
+      // Read the commands of the clients in their own threads; thus, a client
+      // that does not send its command does not stop the others. A client is
+      // disconnected if it does not send its command in time.
+      final var clients = Executors.newCachedThreadPool(Daemon::thread);
+      final var timer   = Executors.newSingleThreadScheduledExecutor(
+        Daemon::thread);
+      final var lock    = new ReentrantLock();
+      while (true) {
+        final var client = server.accept();
+        clients.execute(() -> serve(launcher, client, timer, lock));
+      }
+    } catch (IOException exception) {
+      return Result.failure("Could not serve at `%s`! %s".formatted(socket,
+        exception.getLocalizedMessage()));
+    }
+  }
+
+  /**
+   * Serves the command forwarded by a client, and disconnects it.
+   *
+   * @param launcher Launcher with the options that are used for launching the
+   *                   forwarded command.
+   * @param client   Connection to the client.
+   * @param timer    Executor that disconnects the client if it does not send
+   *                   its command in time.
+   * @param lock     Lock that is held while launching the command. Commands
+   *                   are launched one by one, as a command already uses all
+   *                   the cores.
+   */
+  private static void serve(final Launcher launcher,
+    final SocketChannel client, final ScheduledExecutorService timer,
+    final Lock lock) {
+    try (client) {
+      final var input   = new DataInputStream(Channels.newInputStream(client));
+      final var output  =
+        new DataOutputStream(Channels.newOutputStream(client));
+      final var timeout = timer.schedule(() -> {
+        try {
+          client.close();
+        } catch (IOException exception) {
+          // Ignore, the client is disconnected anyway.
+        }
+      }, TIMEOUT, TimeUnit.SECONDS);
+      final var command = decode(input);
+      if (!timeout.cancel(false)) return;
+
+      lock.lock();
+      try {
+        write(output, command.isSuccess()
+          ? new Launcher(command.value(), launcher.options()).launch()
+          : command.propagate());
+      } finally {
+        lock.unlock();
+      }
+    } catch (IOException exception) {
+      // Ignore the client that disconnected or timed out.
+    }
+  }
+
+  /**
+   * Creates a thread that does not keep the daemon running by itself.
+   *
+   * @param  runnable Code the thread runs.
+   * @return          Created thread.
+   */
+  private static Thread thread(final Runnable runnable) {
+    final var thread = new Thread(runnable);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Forwards the command of the given launcher to the daemon that serves its
+   * workspace.
+   *
+   * @param  launcher Launcher whose command is forwarded.
+   * @return          Outcome of the forwarded command, or nothing if there is
+   *                    not a daemon or the command cannot be forwarded.
+   */
+  public static Box<Result<Void, String>> forward(final Launcher launcher) {
+    // Only commands that do not interact with the user are forwarded. Tests
+    // are not forwarded, as their output is streamed to the user.
+    final var command = launcher.command();
+    if (!(command instanceof Command.Check
+      || command instanceof Command.Build)) return Box.empty();
+
+    // The daemon generates with its own options; thus, a split build is done
+    // by the launch itself. Similarly, the launch must do the measured
+    // commands, as the measurements are collected in its own process, and the
+    // commands with limited jobs, as the daemon uses its own threads.
+    if (launcher.options().containsKey(Option.Split.class)
+      || launcher.options().containsKey(Option.Metrics.class)
+      || launcher.options().containsKey(Option.Jobs.class))
+      return Box.empty();
+
+    final var socket = launcher.directory().resolve(SOCKET);
+    if (!Files.exists(socket)) return Box.empty();
+    final var connection = connect(socket);
+    if (connection.isEmpty()) return Box.empty();
+
+    try (var client = connection.get()) {
+      final var output =
+        new DataOutputStream(Channels.newOutputStream(client));
+      encode(output, command);
+      output.flush();
+      return Box
+        .full(read(new DataInputStream(Channels.newInputStream(client))));
+    } catch (IOException exception) {
+      return Box.full(Result.failure("Lost the connection to the daemon! %s"
+        .formatted(exception.getLocalizedMessage())));
+    }
+  }
+
+  /**
+   * Connects to a daemon.
+   *
+   * @param  socket Path to the socket of the daemon.
+   * @return        Connection, or nothing if the daemon is not serving.
+   */
+  private static Box<SocketChannel> connect(final Path socket) {
+    try {
+      return Box.full(SocketChannel.open(UnixDomainSocketAddress.of(socket)));
+    } catch (IOException exception) {
+      return Box.empty();
+    }
+  }
+
+  /**
+   * Writes a forwarded command.
+   *
+   * @param  output      Stream the command is written to.
+   * @param  command     Written command. Must be a check, test or build
+   *                       command.
+   * @throws IOException If the stream could not be written.
+   */
+  private static void encode(final DataOutputStream output,
+    final Command command) throws IOException {
+    final List<PhysicalName> names;
+    if (command instanceof Command.Check check) {
+      output.writeByte(CHECK);
+      names = check.checked();
+    } else if (command instanceof Command.Test test) {
+      output.writeByte(TEST);
+      names = test.tested();
+    } else {
+      output.writeByte(BUILD);
+      names = List.of(((Command.Build) command).built());
+    }
+    output.writeInt(names.size());
+    for (final var name : names) writeString(output, name.value);
+  }
+
+  /**
+   * Reads a forwarded command.
+   *
+   * @param  input       Stream the command is read from.
+   * @return             Read command, or error message.
+   * @throws IOException If the stream could not be read.
+   */
+  private static Result<Command, String> decode(final DataInputStream input)
+    throws IOException {
+    final var tag   = input.readByte();
+    final var count = input.readInt();
+    if (count < 0 || count > PACKAGES)
+      return Result.failure(
+        "Forwarded %d packages, which is not between 0 and %d!"
+          .formatted(count, PACKAGES));
+    final var names = new ArrayList<Result<PhysicalName, String>>(count);
+    for (var i = 0; i < count; i++) {
+      final var name = readString(input, NAME);
+      if (name.isFailure()) return name.propagate();
+      names.add(PhysicalName.of(name.value()));
+    }
+    final var combined = Result.combine(names, Function.identity(),
+      errors -> String.join(System.lineSeparator(), errors));
+    if (combined.isFailure()) return combined.propagate();
+
+    return switch (tag) {
+    case CHECK -> Result.success(new Command.Check(combined.value()));
+    case TEST -> Result.success(new Command.Test(combined.value()));
+    case BUILD -> count == 1
+      ? Result.success(new Command.Build(combined.value().get(0)))
+      : Result.failure("Build command must have a single package!");
+    default -> Result.failure("Unknown forwarded command `%d`!".formatted(tag));
+    };
+  }
+
+  /**
+   * Writes the outcome of a forwarded command.
+   *
+   * @param  output      Stream the outcome is written to.
+   * @param  outcome     Written outcome.
+   * @throws IOException If the stream could not be written.
+   */
+  private static void write(final DataOutputStream output,
+    final Result<?, String> outcome) throws IOException {
+    output.writeBoolean(outcome.isSuccess());
+    if (outcome.isFailure()) writeString(output, outcome.error());
+    output.flush();
+  }
+
+  /**
+   * Reads the outcome of a forwarded command.
+   *
+   * @param  input       Stream the outcome is read from.
+   * @return             Read outcome.
+   * @throws IOException If the stream could not be read.
+   */
+  private static Result<Void, String> read(final DataInputStream input)
+    throws IOException {
+    if (input.readBoolean()) return Result.success();
+    final var message = readString(input, MESSAGE);
+    if (message.isFailure()) return message.propagate();
+    return Result.failure(message.value());
+  }
+
+  /**
+   * Writes a string with its length, which does not have a limit unlike
+   * {@link DataOutputStream#writeUTF(String)}.
+   *
+   * @param  output      Stream the string is written to.
+   * @param  written     Written string.
+   * @throws IOException If the stream could not be written.
+   */
+  private static void writeString(final DataOutputStream output,
+    final String written) throws IOException {
+    final var bytes = written.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  /**
+   * Reads a string written with its length.
+   *
+   * @param  input       Stream the string is read from.
+   * @param  limit       Maximum number of the bytes in the string.
+   * @return             Read string, or error message if its length is not
+   *                       between zero and the limit.
+   * @throws IOException If the stream could not be read.
+   */
+  private static Result<String, String> readString(
+    final DataInputStream input, final int limit) throws IOException {
+    final var length = input.readInt();
+    if (length < 0 || length > limit) return Result.failure(
+      "Forwarded a string of %d bytes, which is not between 0 and %d!"
+        .formatted(length, limit));
+    return Result.success(
+      new String(input.readNBytes(length), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Constructs a daemon, which is not used as the class only has static
+   * members.
+   */
+  private Daemon() {}
+
+  /**
+   * Runs all the unit tests for {@link Daemon}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a forwarded command is read correctly.
+    tester.run(() -> {
+      final var command = new Command.Check(
+        List.of(PhysicalName.of("A").value(), PhysicalName.of("B").value()));
+      final var decoded = roundTrip(command);
+      return decoded.isSuccess()
+        && decoded.value() instanceof Command.Check check
+        && check.checked().size() == 2
+        && check.checked().get(1).value.equals("B");
+    });
+
+    // Test whether a forwarded build command is read correctly.
+    tester.run(() -> {
+      final var decoded =
+        roundTrip(new Command.Build(PhysicalName.of("A").value()));
+      return decoded.isSuccess()
+        && decoded.value() instanceof Command.Build build
+        && build.built().value.equals("A");
+    });
+
+    // Test whether invalid forwarded names are checked.
+    tester.run(() -> {
+      final var bytes = new ByteArrayOutputStream();
+      try {
+        final var output = new DataOutputStream(bytes);
+        output.writeByte(TEST);
+        output.writeInt(1);
+        writeString(output, "a");
+        return decode(
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+            .isFailure();
+      } catch (IOException exception) {
+        return false;
+      }
+    });
+
+    // Test whether the counts and the lengths out of bounds are reported
+    // without allocating for them.
+    tester.run(() -> {
+      final var bytes = new ByteArrayOutputStream();
+      try {
+        final var output = new DataOutputStream(bytes);
+        for (final var count : new int[] { -1, Integer.MAX_VALUE }) {
+          output.writeByte(CHECK);
+          output.writeInt(count);
+        }
+        for (final var length : new int[] { -1, Integer.MAX_VALUE }) {
+          output.writeByte(CHECK);
+          output.writeInt(1);
+          output.writeInt(length);
+        }
+        final var input =
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (var i = 0; i < 4; i++) if (decode(input).isSuccess()) return false;
+        return true;
+      } catch (IOException exception) {
+        return false;
+      }
+    });
+
+    // Test whether the outcome is read correctly.
+    tester.run(() -> {
+      final var bytes = new ByteArrayOutputStream();
+      try {
+        write(new DataOutputStream(bytes), Result.failure("Error!"));
+        final var outcome = read(
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return outcome.isFailure() && outcome.error().equals("Error!");
+      } catch (IOException exception) {
+        return false;
+      }
+    });
+
+    // Test whether split builds are not forwarded.
+    tester.run(() -> forward(
+      new Launcher(new Command.Build(PhysicalName.of("A").value()),
+        Map.of(Option.Split.class, new Option.Split()))).isEmpty());
+
+    // Test whether measured commands are not forwarded.
+    tester.run(() -> forward(
+      new Launcher(new Command.Check(List.of()), Map.of(Option.Metrics.class,
+        new Option.Metrics(Path.of("metrics.json"))))).isEmpty());
+
+    // Test whether commands that interact with the user are not forwarded.
+    tester.run(() -> forward(new Launcher(
+      new Command.Run(PhysicalName.of("A").value(), List.of()),
+      Map.of())).isEmpty()
+      && forward(new Launcher(new Command.Test(List.of()), Map.of()))
+        .isEmpty());
+  }
+
+  /**
+   * Writes and then reads the given command.
+   *
+   * @param  command Forwarded command.
+   * @return         Read command, or error message.
+   */
+  private static Result<Command, String> roundTrip(final Command command) {
+    final var bytes = new ByteArrayOutputStream();
+    try {
+      encode(new DataOutputStream(bytes), command);
+      return decode(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    } catch (IOException exception) {
+      return Result.failure(exception.getLocalizedMessage());
+    }
+  }
+}
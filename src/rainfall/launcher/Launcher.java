@@ -1,6 +1,28 @@
 package rainfall.launcher;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import rainfall.checker.Checker;
+import rainfall.checker.Graph;
+import rainfall.checker.Scheduler;
+import rainfall.generator.Generator;
+import rainfall.generator.Stamp;
+import rainfall.generator.Toolchain;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Snapshot;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.PhysicalName;
 
 /**
  * Launches the compiler.
@@ -10,4 +32,330 @@ import java.util.Map;
  * @author         calestialgem
  */
 public record Launcher(Command command,
-  Map<Class<? extends Option>, Option> options) {}
+  Map<Class<? extends Option>, Option> options) {
+  /**
+   * Pools of the launches with a jobs option mapped to their parallelism.
+   * Pools are shared between the launches; thus, the launches done by a
+   * daemon do not start new threads each time.
+   */
+  private static final Map<Integer, ForkJoinPool> POOLS =
+    new ConcurrentHashMap<>();
+
+  /**
+   * Does the command with the given options.
+   *
+   * @return Code the run executable exited with, which is zero for the other
+   *           commands, or error message.
+   */
+  public Result<Integer, String> launch() {
+    final var metrics = options.get(Option.Metrics.class);
+    if (metrics == null) return dispatch();
+
+    // Measure the command, and report the failure of writing the
+    // measurements together with the failure of the command.
+    Metrics.enable();
+    try {
+      final var launched = dispatch();
+      final var dumped   = Metrics.dump(((Option.Metrics) metrics).output());
+      if (dumped.isSuccess()) return launched;
+      if (launched.isSuccess()) return dumped.propagate();
+      return Result.failure(launched.error() + System.lineSeparator()
+        + dumped.error());
+    } finally {
+      Metrics.disable();
+    }
+  }
+
+  /**
+   * Does the command.
+   *
+   * @return Exit code, or error message.
+   */
+  private Result<Integer, String> dispatch() {
+    if (command instanceof Command.New)
+      return Result.failure("Creating packages is not implemented yet!");
+    if (command instanceof Command.Serve) return exit(Daemon.serve(this));
+    if (command instanceof Command.Watch watch)
+      return exit(Watcher.watch(this, watch.watched()));
+    return build();
+  }
+
+  /**
+   * @param  result Outcome of a command that does not run an executable.
+   * @return        Zero as the exit code, or the same error.
+   */
+  private static Result<Integer, String> exit(
+    final Result<Void, String> result) {
+    return result.map(success -> 0);
+  }
+
+  /**
+   * Loads and checks the workspace, and generates the C code of the built
+   * package. Compiles and runs the C code if the package is run, where the
+   * package is not built again if none of the inputs of its executable changed
+   * since it was built, and the workspace is not even loaded if none of their
+   * files changed.
+   *
+   * @return Exit code, or error message.
+   */
+  private Result<Integer, String> build() {
+    // Run the executable without loading the workspace if none of the files
+    // it was built from changed since it was built.
+    if (command instanceof Command.Run run) {
+      final var executable = Generator.executable(directory(), run.run());
+      if (Stamp.isUnchanged(directory(), executable, configuration()))
+        return Toolchain.run(executable, run.passed());
+    }
+
+    // All the other commands start by loading the workspace, where each source
+    // is lexed and parsed in its own task. The diagnostics are reported in the
+    // order of the paths regardless of the order the tasks finish. Packages
+    // that did not change since the last snapshot are restored from it. Only
+    // the given packages and the packages they import are loaded.
+    final var restored = Snapshot.load(pool(), directory(), packages(),
+      Checker::imports,
+      contents -> Lexer.lex(contents).flatMap(Parser::parse));
+    if (restored.isFailure()) return restored.propagate();
+    final var workspace = restored.value().workspace();
+
+    // Check whether the packages given to the command exist.
+    final var unknown = new ArrayList<String>();
+    for (final var name : packages())
+      if (!workspace.packages().containsKey(name))
+        unknown.add("Unknown package `%s`!".formatted(name));
+    if (!unknown.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), unknown));
+
+    final var graph = Graph.of(workspace);
+    if (graph.isFailure()) return graph.propagate();
+
+    // Run the executable without checking and building it again if the loaded
+    // sources of the package and its imports are the ones it was built from,
+    // which are recorded again as their files might be touched.
+    String stamp  = null;
+    String inputs = null;
+    if (command instanceof Command.Run run) {
+      final var executable = Generator.executable(directory(), run.run());
+      final var closure    = graph.value().closure(List.of(run.run()));
+      stamp  = Stamp.of(directory(), workspace, closure, configuration());
+      inputs = Stamp.inputs(directory(), workspace, closure, configuration());
+      if (Stamp.isFresh(executable, stamp)) {
+        if (restored.value().changed())
+          Snapshot.store(directory(), restored.value());
+        final var stored = Stamp.store(executable, stamp, inputs);
+        if (stored.isFailure()) return stored.propagate();
+        return Toolchain.run(executable, run.passed());
+      }
+    }
+
+    // Check the given packages and the packages they import, where a package is
+    // checked as soon as all of its imports are checked.
+    final var checked = Scheduler.<Void>run(pool(), graph.value(),
+      packages(), (name, imports) -> Checker.check(name,
+        workspace.packages().get(name)));
+    if (checked.isFailure()) return checked.propagate();
+
+    // Store the checked workspace for the next launch if it changed.
+    if (restored.value().changed())
+      Snapshot.store(directory(), restored.value());
+
+    // Test the given packages, or all the executable packages if none are
+    // given; the libraries cannot be run as tests by themselves.
+    if (command instanceof Command.Test) {
+      final var tested = new ArrayList<PhysicalName>(packages());
+      if (tested.isEmpty()) for (final var name : graph.value().order())
+        if (Checker.isExecutable(workspace.packages().get(name)))
+          tested.add(name);
+      return exit(Runner.test(pool(), directory(), workspace, graph.value(),
+        tested, configuration(), jobs()));
+    }
+
+    // Generate the C file of the built package, where the packages are
+    // generated in parallel and written in the order of their imports.
+    final PhysicalName built;
+    if (command instanceof Command.Build build) built = build.built();
+    else if (command instanceof Command.Run run) built = run.run();
+    else return Result.success(0);
+    final var packages  = graph.value().closure(List.of(built));
+    final var generated = options.containsKey(Option.Split.class)
+      ? Generator.split(pool(), directory(), workspace, packages, built)
+      : Generator.generate(pool(), directory(), workspace, packages, built);
+    if (generated.isFailure()) return generated.propagate();
+
+    if (!(command instanceof Command.Run run)) return Result.success(0);
+    final var executable = Generator.executable(directory(), built);
+    final var compiled   = options.containsKey(Option.Split.class)
+      ? Toolchain.make(generated.value(), jobs())
+      : Toolchain.compile(generated.value(), executable);
+    if (compiled.isFailure()) return compiled.propagate();
+    final var stored = Stamp.store(executable, stamp, inputs);
+    if (stored.isFailure()) return stored.propagate();
+    return Toolchain.run(executable, run.passed());
+  }
+
+  /**
+   * @return Description of the options and the tools that change the built
+   *           executable.
+   */
+  private String configuration() {
+    return "split=%b %s".formatted(options.containsKey(Option.Split.class),
+      Toolchain.identity());
+  }
+
+  /**
+   * @return Maximum number of the tasks that run at the same time, which is
+   *           the number of the available processors if it is not set.
+   */
+  public int jobs() {
+    final var jobs = options.get(Option.Jobs.class);
+    if (jobs == null) return Runtime.getRuntime().availableProcessors();
+    return ((Option.Jobs) jobs).count();
+  }
+
+  /**
+   * Gives the pool that runs the tasks of all the phases. The pool has as
+   * many threads as the jobs; thus, a single job runs the tasks one by one in
+   * a deterministic order.
+   *
+   * @return Pool of the launch, which is the common pool if the jobs are not
+   *           set.
+   */
+  public ForkJoinPool pool() {
+    final var jobs = options.get(Option.Jobs.class);
+    if (jobs == null) return ForkJoinPool.commonPool();
+    return POOLS.computeIfAbsent(((Option.Jobs) jobs).count(),
+      ForkJoinPool::new);
+  }
+
+  /**
+   * @return Packages that are given to the command.
+   */
+  private List<PhysicalName> packages() {
+    if (command instanceof Command.Check check) return check.checked();
+    if (command instanceof Command.Test test) return test.tested();
+    if (command instanceof Command.Build build) return List.of(build.built());
+    if (command instanceof Command.Run run) return List.of(run.run());
+    return List.of();
+  }
+
+  /**
+   * @return Path to the workspace directory, which is the current working
+   *           directory if it is not set.
+   */
+  public Path directory() {
+    final var directory = options.get(Option.Directory.class);
+    if (directory == null) return Path.of("");
+    return ((Option.Directory) directory).workspace();
+  }
+
+  /**
+   * Runs all the unit tests for {@link Launcher}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a valid workspace is checked.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a; b { c; }"),
+      directory -> check(directory).isSuccess()));
+
+    // Test whether the syntax errors in all the sources are reported.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a", "B/C.tr", "}"),
+      directory -> {
+        final var checked = check(directory);
+        return checked.isFailure() && checked.error().lines().count() == 2;
+      }));
+
+    // Test whether the packages given to the command must exist.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", ""),
+      directory -> check(directory, "A").isSuccess()
+        && check(directory, "B").isFailure()));
+
+    // Test whether the imports are checked.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B/C.tr", "import A;", "D.tr", "import E;"),
+      directory -> {
+        final var checked = check(directory);
+        return checked.isFailure() && checked.error().lines().count() == 1;
+      }));
+
+    // Test whether only the given packages and their imports are checked.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B.tr", "", "C.tr", "a { import A; }"),
+      directory -> check(directory, "A").isSuccess()));
+
+    // Test whether the packages that are not needed are not loaded.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B/C.tr", "", "D.tr", "}"),
+      directory -> check(directory, "A").isSuccess()
+        && check(directory).isFailure()));
+
+    // Test whether the libraries are not tested when no packages are given.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "int a(void) { return 1; }"), directory -> {
+        final var options = new HashMap<Class<? extends Option>, Option>();
+        options.put(Option.Directory.class, new Option.Directory(directory));
+        return new Launcher(new Command.Test(List.of()), options).launch()
+          .isSuccess()
+          && !Files.exists(directory.resolve(Runner.DIRECTORY).resolve("A"));
+      }));
+
+    // Test whether the code of the run executable is given.
+    tester.run(() -> !Toolchain.isAvailable() || Tester.withFiles(
+      Map.of("A.tr", "int main(void) { return 3; }"), directory -> {
+        final var options = new HashMap<Class<? extends Option>, Option>();
+        options.put(Option.Directory.class, new Option.Directory(directory));
+        final var run = new Launcher(
+          new Command.Run(PhysicalName.of("A").value(), List.of()), options)
+          .launch();
+        return run.isSuccess() && run.value() == 3;
+      }));
+
+    // Test whether a single job checks the workspace.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B.tr", "", "C.tr", "a { import A; }"),
+      directory -> {
+        final var options = new HashMap<Class<? extends Option>, Option>();
+        options.put(Option.Directory.class, new Option.Directory(directory));
+        options.put(Option.Jobs.class, new Option.Jobs(1));
+        final var launcher = new Launcher(new Command.Check(List.of()),
+          options);
+        return launcher.pool().getParallelism() == 1
+          && launcher.launch().error().contains("top level");
+      }));
+
+    // Test whether the measurements of a command are written.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a;", "B/C.tr", "c;"),
+      directory -> {
+        final var file    = directory.resolve("metrics.json");
+        final var options = new HashMap<Class<? extends Option>, Option>();
+        options.put(Option.Directory.class, new Option.Directory(directory));
+        options.put(Option.Metrics.class, new Option.Metrics(file));
+        if (new Launcher(new Command.Check(List.of()), options).launch()
+          .isFailure()) return false;
+        try {
+          final var written = Files.readString(file);
+          return written.contains("\"traceEvents\"")
+            && written.contains("\"check\"")
+            && written.contains("\"files\": 2");
+        } catch (IOException exception) {
+          return false;
+        }
+      }));
+  }
+
+  /**
+   * Launches a check command.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  checked   Names of the checked packages.
+   * @return           Exit code, or error message.
+   */
+  private static Result<Integer, String> check(final Path directory,
+    final String... checked) {
+    final var names = new ArrayList<PhysicalName>();
+    for (final var name : checked) names.add(PhysicalName.of(name).value());
+    final var options = new HashMap<Class<? extends Option>, Option>();
+    options.put(Option.Directory.class, new Option.Directory(directory));
+    return new Launcher(new Command.Check(names), options).launch();
+  }
+}
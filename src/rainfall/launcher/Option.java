@@ -22,6 +22,41 @@ public sealed interface Option {
    */
   record Directory(Path workspace) implements Option {}
 
+  /**
+   * Runs the unit tests of the compiler before doing the command, which stops
+   * the compiler if any of them fail.
+   *
+   * @author calestialgem
+   */
+  record SelfTest() implements Option {}
+
+  /**
+   * Generates a separate C file for each built package instead of a single
+   * one, which are compiled in parallel by the generated Makefile.
+   *
+   * @author calestialgem
+   */
+  record Split() implements Option {}
+
+  /**
+   * Measures the phases of the compiler while doing the command, and writes
+   * the measurements to a file as a Chrome trace.
+   *
+   * @param  output Path to the file the measurements are written to.
+   * @author        calestialgem
+   */
+  record Metrics(Path output) implements Option {}
+
+  /**
+   * Sets the number of the tasks that are run at the same time in all the
+   * phases, which is the number of the available processors if this option
+   * is not set. A single job runs everything in a deterministic order.
+   *
+   * @param  count Maximum number of the concurrent tasks, which is positive.
+   * @author       calestialgem
+   */
+  record Jobs(int count) implements Option {}
+
   /**
    * Registers an option to a map.
    *
@@ -38,7 +73,7 @@ public sealed interface Option {
 
     // Put and return success.
     options.put(registered.getClass(), registered);
-    return Result.success(null);
+    return Result.success();
   }
 
   /**
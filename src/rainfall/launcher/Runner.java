@@ -0,0 +1,254 @@
+package rainfall.launcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import rainfall.checker.Graph;
+import rainfall.generator.Generator;
+import rainfall.generator.Stamp;
+import rainfall.generator.Toolchain;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Tree;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Loader;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Workspace;
+
+/**
+ * Runs the tests of packages. The test of a package is its executable, which
+ * is built with the packages it imports and passes if it exits with zero.
+ *
+ * <p>
+ * Tests run as child processes, where at most the given number of them are
+ * built and run at the same time. The output of a test is streamed as it is
+ * written, with each line prefixed by the name of the package; thus, the
+ * outputs of the concurrent tests can be told apart. A package whose inputs
+ * did not change since its tests last passed is not tested again.
+ *
+ * @author calestialgem
+ */
+public final class Runner {
+  /**
+   * Path to the directory of the test executables relative to the workspace
+   * directory. Tests are built apart from the executables of the run command;
+   * thus, testing a package does not replace the executable that is run.
+   */
+  public static final Path DIRECTORY = Path.of(".rainfall", "test");
+
+  /**
+   * Pool that runs the generation tasks.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Path to the workspace directory.
+   */
+  private final Path directory;
+
+  /**
+   * Checked workspace.
+   */
+  private final Workspace<Tree> workspace;
+
+  /**
+   * Imports of the packages in the workspace.
+   */
+  private final Graph graph;
+
+  /**
+   * Description of the build configuration.
+   */
+  private final String configuration;
+
+  /**
+   * Outcome of testing a package.
+   *
+   * @param  name   Name of the tested package.
+   * @param  cached Whether the test was skipped, because it passed with the
+   *                  same inputs before.
+   * @param  error  Error message if the test failed, or null.
+   * @author        calestialgem
+   */
+  private record Outcome(PhysicalName name, boolean cached, String error) {}
+
+  /**
+   * Tests the given packages, and reports the number of the passed, skipped
+   * and failed ones.
+   *
+   * @param  pool          Pool that runs the generation tasks.
+   * @param  directory     Path to the workspace directory.
+   * @param  workspace     Checked workspace.
+   * @param  graph         Imports of the packages in the workspace.
+   * @param  tested        Names of the tested packages.
+   * @param  configuration Description of the build configuration.
+   * @param  jobs          Maximum number of the concurrent tests.
+   * @return               Success, or error message.
+   */
+  static Result<Void, String> test(final ForkJoinPool pool,
+    final Path directory, final Workspace<Tree> workspace, final Graph graph,
+    final List<PhysicalName> tested, final String configuration,
+    final int jobs) {
+    final var report =
+      new Runner(pool, directory, workspace, graph, configuration)
+        .run(tested, jobs);
+    if (report.isFailure()) return report.propagate();
+    System.out.println(report.value());
+    return Result.success();
+  }
+
+  /**
+   * Constructs a runner.
+   *
+   * @param pool          Pool that runs the generation tasks.
+   * @param directory     Path to the workspace directory.
+   * @param workspace     Checked workspace.
+   * @param graph         Imports of the packages in the workspace.
+   * @param configuration Description of the build configuration.
+   */
+  private Runner(final ForkJoinPool pool, final Path directory,
+    final Workspace<Tree> workspace, final Graph graph,
+    final String configuration) {
+    this.pool          = pool;
+    this.directory     = directory;
+    this.workspace     = workspace;
+    this.graph         = graph;
+    this.configuration = configuration;
+  }
+
+  /**
+   * Tests the given packages concurrently.
+   *
+   * @param  tested Names of the tested packages.
+   * @param  jobs   Maximum number of the concurrent tests.
+   * @return        Report of the tested packages, or error message.
+   */
+  private Result<String, String> run(final List<PhysicalName> tested,
+    final int jobs) {
+    // Tests mostly wait for their child processes; thus, they are run in
+    // threads of their own instead of the fork-join pool.
+    final var executor = Executors.newFixedThreadPool(jobs);
+    final var outcomes = new ArrayList<Outcome>(tested.size());
+    try {
+      final var futures = new ArrayList<Future<Outcome>>(tested.size());
+      for (final var name : tested)
+        futures.add(executor.submit(() -> test(name)));
+      for (var i = 0; i < futures.size(); i++) {
+        try {
+          outcomes.add(futures.get(i).get());
+        } catch (ExecutionException exception) {
+          outcomes.add(new Outcome(tested.get(i), false,
+            "Tests of package `%s` crashed! %s".formatted(tested.get(i),
+              exception.getCause())));
+        }
+      }
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return Result.failure("Interrupted while testing!");
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Report the failures in the order of the tested packages.
+    var cached = 0;
+    final var errors = new ArrayList<String>();
+    for (final var outcome : outcomes) {
+      if (outcome.error() != null) errors.add(outcome.error());
+      else if (outcome.cached()) cached++;
+    }
+    if (!errors.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), errors));
+    return Result.success("Tested %d packages; %d passed before.".formatted(
+      tested.size(), cached));
+  }
+
+  /**
+   * Builds and runs the test of a package, unless it passed with the same
+   * inputs before.
+   *
+   * @param  name Name of the tested package.
+   * @return      Outcome of the test.
+   */
+  private Outcome test(final PhysicalName name) {
+    final var packages   = graph.closure(List.of(name));
+    final var stamp      = Stamp.of(directory, workspace, packages,
+      configuration);
+    final var executable = directory.resolve(DIRECTORY).resolve(name.value)
+      .resolve(name.value + Generator.EXECUTABLE);
+    if (Stamp.isPassed(executable, stamp))
+      return new Outcome(name, true, null);
+
+    // Print each line of the output as a whole, which keeps the lines of the
+    // concurrent tests from mixing.
+    final var prefix = "[%s] ".formatted(name);
+    final Result<Void, String> tested = Generator
+      .generate(pool, directory, workspace, packages, name)
+      .flatMap(generated -> Toolchain.compile(generated, executable,
+        line -> System.out.println(prefix + line)))
+      .flatMap(compiled -> Toolchain.execute(executable, List.of(),
+        line -> System.out.println(prefix + line)))
+      .flatMap(passed -> Stamp.pass(executable, stamp));
+    if (tested.isFailure()) return new Outcome(name, false,
+      "Tests of package `%s` failed! %s".formatted(name, tested.error()));
+    return new Outcome(name, false, null);
+  }
+
+  /**
+   * Runs all the unit tests for {@link Runner}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether the failed tests are reported, and the passed ones are
+    // skipped until their inputs change.
+    tester.run(() -> !Toolchain.isAvailable() || Tester.withFiles(
+      Map.of("A.tr", "import B; int main(void) { return b(); }", "B.tr",
+        "int b(void) { return 0; }", "C.tr", "int main(void) { return 1; }"),
+      directory -> {
+        final var first = run(directory, "A", "C");
+        if (!first.isFailure() || first.error().lines().count() != 1
+          || !first.error().contains("`C`"))
+          return false;
+        final var second = run(directory, "A");
+        if (!second.isSuccess() || !second.value().contains("1 passed"))
+          return false;
+        try {
+          Files.writeString(directory.resolve("B.tr"),
+            "int b(void) { return 2 - 2; }");
+        } catch (IOException exception) {
+          return false;
+        }
+        final var third = run(directory, "A");
+        return third.isSuccess() && third.value().contains("0 passed")
+          && !Files.exists(
+            Generator.executable(directory, PhysicalName.of("A").value()));
+      }));
+  }
+
+  /**
+   * Loads, checks and tests a workspace with a single job.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  tested    Names of the tested packages.
+   * @return           Report of the tested packages, or error message.
+   */
+  private static Result<String, String> run(final Path directory,
+    final String... tested) {
+    final var workspace = Loader.load(ForkJoinPool.commonPool(), directory,
+      contents -> Lexer.lex(contents).flatMap(Parser::parse)).value();
+    final var graph     = Graph.of(workspace).value();
+    final var names     = new ArrayList<PhysicalName>();
+    for (final var name : tested) names.add(PhysicalName.of(name).value());
+    return new Runner(ForkJoinPool.commonPool(), directory, workspace, graph,
+      "").run(names, 1);
+   }
+}
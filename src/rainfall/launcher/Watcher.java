@@ -0,0 +1,487 @@
+package rainfall.launcher;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rainfall.checker.Checker;
+import rainfall.checker.Graph;
+import rainfall.checker.Scheduler;
+import rainfall.syntax.Lexer;
+import rainfall.syntax.Parser;
+import rainfall.syntax.Tree;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+import rainfall.workspace.Loader;
+import rainfall.workspace.Package;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Source;
+import rainfall.workspace.Workspace;
+
+/**
+ * Keeps a workspace loaded, and checks it again whenever its files change.
+ * A modified source is modeled again and replaced in its package, while a
+ * package that gains or loses files is loaded again; thus, the other
+ * packages are not loaded again. Then, only the changed packages and the
+ * packages that import them are checked again.
+ *
+ * @author calestialgem
+ */
+public final class Watcher {
+  /**
+   * Milliseconds to wait for more changes after a change, which groups the
+   * changes that are made together; for example, by saving all the files in
+   * an editor.
+   */
+  private static final long DELAY = 50;
+
+  /**
+   * Pool that runs the loading and checking tasks.
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Path to the workspace directory.
+   */
+  private final Path directory;
+
+  /**
+   * Packages that are checked. Checks all the packages if it is empty.
+   */
+  private final List<PhysicalName> watched;
+
+  /**
+   * Loaded packages.
+   */
+  private final Map<PhysicalName, Package<Tree>> packages;
+
+  /**
+   * Errors of the packages that could not be loaded, which are not in the
+   * loaded packages.
+   */
+  private final Map<PhysicalName, String> failed;
+
+  /**
+   * Errors of the sources that could not be modeled after they are modified,
+   * whose previous models are kept in the loaded packages.
+   */
+  private final Map<Path, String> broken;
+
+  /**
+   * Outcomes of checking the packages, which are kept until the packages or
+   * their imports change.
+   */
+  private final Map<PhysicalName, Result<Void, String>> checked;
+
+  /**
+   * Watches the workspace of the given launcher until the process is stopped.
+   *
+   * @param  launcher Launcher with the options that are used for watching.
+   * @param  watched  Packages that are checked. Checks all the packages if it
+   *                    is empty.
+   * @return          Error message, as the watcher only returns when it
+   *                    fails.
+   */
+  static Result<Void, String> watch(final Launcher launcher,
+    final List<PhysicalName> watched) {
+    final var directory = launcher.directory();
+    final var watcher   = new Watcher(launcher.pool(), directory, watched);
+    try (var service = directory.getFileSystem().newWatchService()) {
+      final var keys = new HashMap<WatchKey, Path>();
+      register(service, keys, directory);
+      report(watcher.load());
+
+      while (true) {
+        // Wait for a change, and collect the changes that closely follow it.
+        // Paths are mapped to whether they are only modified.
+        final var changes  = new HashMap<Path, Boolean>();
+        var       overflow = false;
+        var       key      = service.take();
+        while (key != null) {
+          final var parent = keys.get(key);
+          for (final var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              overflow = true;
+              continue;
+            }
+            final var path = parent.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+              && Files.isDirectory(path))
+              register(service, keys, path);
+            changes.merge(path,
+              event.kind() == StandardWatchEventKinds.ENTRY_MODIFY,
+              Boolean::logicalAnd);
+          }
+          if (!key.reset()) keys.remove(key);
+          key = service.poll(DELAY, TimeUnit.MILLISECONDS);
+        }
+
+        // Load everything again if some changes are lost.
+        report(overflow ? watcher.load() : watcher.change(changes));
+      }
+    } catch (IOException exception) {
+      return Result.failure("Could not watch `%s`! %s".formatted(directory,
+        exception.getLocalizedMessage()));
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return Result
+        .failure("Interrupted while watching `%s`!".formatted(directory));
+    }
+  }
+
+  /**
+   * Watches a directory and the module directories under it.
+   *
+   * @param  service     Service that watches the directories.
+   * @param  keys        Watched directories mapped to their keys.
+   * @param  registered  Path to the directory.
+   * @throws IOException If the directories could not be watched.
+   */
+  private static void register(final WatchService service,
+    final Map<WatchKey, Path> keys, final Path registered) throws IOException {
+    Files.walkFileTree(registered, new SimpleFileVisitor<>() {
+      @Override public FileVisitResult preVisitDirectory(final Path visited,
+        final BasicFileAttributes attributes) throws IOException {
+        // Directories that are not named like modules are not a part of the
+        // workspace; for example, the build outputs.
+        if (!visited.equals(registered)
+          && PhysicalName.of(visited.getFileName().toString()).isFailure())
+          return FileVisitResult.SKIP_SUBTREE;
+        keys.put(visited.register(service,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE,
+          StandardWatchEventKinds.ENTRY_MODIFY), visited);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * Prints the outcome of loading or checking.
+   *
+   * @param outcome Report of the checked packages, or error message.
+   */
+  private static void report(final Result<String, String> outcome) {
+    if (outcome.isSuccess()) System.out.println(outcome.value());
+    else System.err.println(outcome.error());
+  }
+
+  /**
+   * Constructs a watcher that did not load any packages.
+   *
+   * @param pool      Pool that runs the loading and checking tasks.
+   * @param directory Path to the workspace directory.
+   * @param watched   Packages that are checked. Checks all the packages if it
+   *                    is empty.
+   */
+  Watcher(final ForkJoinPool pool, final Path directory,
+    final List<PhysicalName> watched) {
+    this.pool      = pool;
+    this.directory = directory;
+    this.watched   = watched;
+    packages       = new HashMap<>();
+    failed         = new HashMap<>();
+    broken         = new HashMap<>();
+    checked        = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Loads all the packages, and checks them.
+   *
+   * @return Report of the checked packages, or error message.
+   */
+  Result<String, String> load() {
+    packages.clear();
+    failed.clear();
+    broken.clear();
+    checked.clear();
+    final var names = Loader.names(directory);
+    if (names.isFailure()) return names.propagate();
+    reload(names.value());
+    return check(names.value());
+  }
+
+  /**
+   * Updates the packages after some files change, and checks the changed
+   * ones again.
+   *
+   * @param  changes Paths to the changed files mapped to whether they are only
+   *                   modified, which are not created or deleted.
+   * @return         Report of the checked packages, or error message.
+   */
+  Result<String, String> change(final Map<Path, Boolean> changes) {
+    final var reloaded = new HashSet<PhysicalName>();
+    final var patched  = new HashSet<PhysicalName>();
+    for (final var change : changes.entrySet()) {
+      final var relative = directory.relativize(change.getKey());
+      final var count    = relative.getNameCount();
+      final var fileName = relative.getFileName().toString();
+      final var isSource = fileName.endsWith(Loader.EXTENSION);
+
+      // Find the names in the path, which are the package, the modules and
+      // the source or the directory. Ignore the paths that are not in the
+      // workspace, like the build outputs or the other files.
+      final var names = new ArrayList<PhysicalName>(count);
+      for (var i = 0; i < count; i++) {
+        final var text = i == count - 1 && isSource
+          ? fileName.substring(0, fileName.length() - Loader.EXTENSION.length())
+          : relative.getName(i).toString();
+        final var name = PhysicalName.of(text);
+        if (name.isFailure()) break;
+        names.add(name.value());
+      }
+      if (names.size() != count) continue;
+
+      // Load the package again if the file is not a source, the source is
+      // created or deleted, or the source could not be replaced.
+      if (isSource && change.getValue() && patch(change.getKey(), names))
+        patched.add(names.get(0));
+      else reloaded.add(names.get(0));
+    }
+
+    final var updated = new HashSet<>(patched);
+    updated.addAll(reloaded);
+    if (updated.isEmpty()) return Result.success("Nothing changed.");
+    reload(reloaded);
+    return check(updated);
+  }
+
+  /**
+   * Models a modified source again, and replaces it in its package.
+   *
+   * @param  file  Path to the source file.
+   * @param  names Names of the package, the modules and the source in order.
+   * @return       Whether the source is replaced or it is broken; otherwise,
+   *                 the package must be loaded again. A package with a broken
+   *                 source keeps its previous tree, which is not checked until
+   *                 the source is fixed.
+   */
+  private boolean patch(final Path file, final List<PhysicalName> names) {
+    final var loaded = packages.get(names.get(0));
+    if (loaded == null) return false;
+    final var modeled = Contents.read(file)
+      .flatMap(contents -> Lexer.lex(contents).flatMap(Parser::parse));
+    if (modeled.isFailure()) {
+      broken.put(file, modeled.error());
+      return true;
+    }
+    final var source  =
+      new Source<>(names.get(names.size() - 1), file, modeled.value());
+    final var modules = names.size() == 1
+      ? List.<PhysicalName>of()
+      : names.subList(1, names.size() - 1);
+    final var patched = loaded.patch(modules, source);
+    if (patched.isEmpty()) return false;
+    packages.put(names.get(0), patched.get());
+    broken.remove(file);
+    return true;
+  }
+
+  /**
+   * Loads the given packages again.
+   *
+   * @param names Names of the loaded packages.
+   */
+  private void reload(final Collection<PhysicalName> names) {
+    final var loaded = Loader.reload(pool, directory, names,
+      contents -> Lexer.lex(contents).flatMap(Parser::parse));
+    for (final var entry : loaded.entrySet()) {
+      final var name   = entry.getKey();
+      final var result = entry.getValue();
+
+      // Forget the broken sources, which are reported again while loading.
+      broken.keySet().removeIf(path -> isIn(path, name));
+      failed.remove(name);
+      packages.remove(name);
+      if (result.isFailure()) failed.put(name, result.error());
+      else if (result.value().isFull())
+        packages.put(name, result.value().get());
+    }
+  }
+
+  /**
+   * @param  path Path to a file in the workspace.
+   * @param  name Name of a package.
+   * @return      Whether the file is in the package.
+   */
+  private boolean isIn(final Path path, final PhysicalName name) {
+    final var first = directory.relativize(path).getName(0).toString();
+    return first.equals(name.value)
+      || first.equals(name.value + Loader.EXTENSION);
+  }
+
+  /**
+   * Checks the changed packages and the packages that import them again. The
+   * packages with broken sources are not checked, as their trees are stale.
+   *
+   * @param  changed Names of the changed packages.
+   * @return         Report of the checked packages, or error message.
+   */
+  private Result<String, String> check(final Collection<PhysicalName> changed) {
+    final var start  = System.nanoTime();
+    final var errors = new ArrayList<String>();
+    final var failures = new ArrayList<>(failed.keySet());
+    failures.sort(Comparator.comparing(name -> name.value));
+    for (final var name : failures) errors.add(failed.get(name));
+    errors.addAll(new TreeMap<>(broken).values());
+
+    // Find the packages that must be checked again.
+    final var workspace = new Workspace<>(Map.copyOf(packages));
+    final var graph     = Graph.of(workspace);
+    if (graph.isFailure()) {
+      errors.add(graph.error());
+      return Result.failure(String.join(System.lineSeparator(), errors));
+    }
+    for (final var name : graph.value().dependents(changed))
+      checked.remove(name);
+
+    // Check the watched packages that exist, where the unchanged ones are not
+    // checked again.
+    final var roots = new ArrayList<PhysicalName>();
+    for (final var name : watched) {
+      if (packages.containsKey(name)) roots.add(name);
+      else if (!failed.containsKey(name))
+        errors.add("Unknown package `%s`!".formatted(name));
+    }
+    final var count = new AtomicInteger();
+    if (watched.isEmpty() || !roots.isEmpty()) {
+      final var outcome = Scheduler.<Void>run(pool, graph.value(), roots,
+        (name, imports) -> {
+          for (final var path : broken.keySet()) if (isIn(path, name))
+            return Result.failure(
+              "Package `%s` is not checked because its source `%s` is broken!"
+                .formatted(name, path));
+          return checked.computeIfAbsent(name, key -> {
+            count.incrementAndGet();
+            return Checker.check(name, workspace.packages().get(name));
+          });
+        });
+      if (outcome.isFailure()) errors.add(outcome.error());
+    }
+
+    if (!errors.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), errors));
+    return Result.success("Checked %d packages in %.3f ms.".formatted(
+      count.get(), (System.nanoTime() - start) / 1e6));
+  }
+
+  /**
+   * Runs all the unit tests for {@link Watcher}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a modified source is replaced, and only the packages that
+    // need it are checked again.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "import B;", "B/C.tr", "c;", "D.tr", "d;"), directory -> {
+        final var watcher = new Watcher(ForkJoinPool.commonPool(), directory,
+          List.of());
+        final var loaded  = watcher.load();
+        final var file    = directory.resolve("B").resolve("C.tr");
+        if (!write(file, "c { import D; }")) return false;
+        final var broken = watcher.change(Map.of(file, true));
+        if (!write(file, "c { d; }")) return false;
+        final var fixed = watcher.change(Map.of(file, true));
+        return loaded.isSuccess() && loaded.value().startsWith("Checked 3 ")
+          && broken.isFailure() && fixed.isSuccess()
+          && fixed.value().startsWith("Checked 2 ");
+      }));
+
+    // Test whether a source that could not be modeled is reported until it is
+    // fixed.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a;", "B.tr", "b;"),
+      directory -> {
+        final var watcher = new Watcher(ForkJoinPool.commonPool(), directory,
+          List.of());
+        watcher.load();
+        final var file = directory.resolve("A.tr");
+        if (!write(file, "a")) return false;
+        final var broken = watcher.change(Map.of(file, true));
+        final var other  = watcher.change(Map.of(directory.resolve("B.tr"),
+          true));
+        if (!write(file, "a;")) return false;
+        return broken.isFailure() && other.isFailure()
+          && watcher.change(Map.of(file, true)).isSuccess();
+      }));
+
+    // Test whether the previous tree of a broken source is not checked, and
+    // its package is checked again after it is fixed.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "import B;", "B.tr", "b;"),
+      directory -> {
+        final var watcher = new Watcher(ForkJoinPool.commonPool(), directory,
+          List.of());
+        watcher.load();
+        final var file = directory.resolve("B.tr");
+        if (!write(file, "import C")) return false;
+        final var broken = watcher.change(Map.of(file, true));
+        if (!write(file, "b;")) return false;
+        final var fixed = watcher.change(Map.of(file, true));
+        return broken.isFailure()
+          && broken.error().contains("`B` is not checked")
+          && fixed.isSuccess() && fixed.value().startsWith("Checked 2 ");
+      }));
+
+    // Test whether created packages are loaded.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "import B;"),
+      directory -> {
+        final var watcher = new Watcher(ForkJoinPool.commonPool(), directory,
+          List.of());
+        final var missing = watcher.load();
+        final var file    = directory.resolve("B").resolve("C.tr");
+        try {
+          Files.createDirectories(file.getParent());
+        } catch (IOException exception) {
+          return false;
+        }
+        if (!write(file, "c;")) return false;
+        return missing.isFailure() && watcher
+          .change(Map.of(file.getParent(), false, file, false)).isSuccess();
+      }));
+
+    // Test whether the files that are not in the workspace are ignored.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "a;"), directory -> {
+      final var watcher = new Watcher(ForkJoinPool.commonPool(), directory,
+        List.of());
+      watcher.load();
+      final var changed = watcher.change(Map.of(directory.resolve(".rainfall")
+        .resolve("B.tr"), false, directory.resolve("A.txt"), false));
+      return changed.isSuccess() && changed.value().equals("Nothing changed.");
+    }));
+  }
+
+  /**
+   * Writes a text to a file.
+   *
+   * @param  file Path to the written file.
+   * @param  text Written text.
+   * @return      Whether the file is written.
+   */
+  private static boolean write(final Path file, final String text) {
+    try {
+      Files.writeString(file, text);
+      return true;
+    } catch (IOException exception) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package rainfall.syntax;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import rainfall.utility.Bencher;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+import rainfall.workspace.PhysicalName;
+
+/**
+ * Groups the bytes of a source into tokens. Characters are classified by
+ * looking them up in a table; thus, a byte is only read once.
+ *
+ * @author calestialgem
+ */
+public final class Lexer {
+  /**
+   * Class of the characters that cannot be in a source outside of the strings
+   * and the comments, which includes the ones outside the ASCII range.
+   */
+  private static final byte INVALID = 0;
+
+  /**
+   * Class of the characters that separate the tokens.
+   */
+  private static final byte WHITESPACE = 1;
+
+  /**
+   * Class of the characters that start and continue an identifier, which are
+   * the letters and the underscore.
+   */
+  private static final byte LETTER = 2;
+
+  /**
+   * Class of the decimal digits.
+   */
+  private static final byte DIGIT = 3;
+
+  /**
+   * Class of the quotation mark.
+   */
+  private static final byte QUOTE = 4;
+
+  /**
+   * Class of the characters that form the operators.
+   */
+  private static final byte OPERATOR = 5;
+
+  /**
+   * Class of the characters that are tokens by themselves.
+   */
+  private static final byte PUNCTUATION = 6;
+
+  /**
+   * Classes of the ASCII characters.
+   */
+  private static final byte[] CLASSES = new byte[128];
+
+  /**
+   * Kinds of the tokens that are formed by the punctuation characters.
+   */
+  private static final int[] PUNCTUATIONS = new int[128];
+
+  static {
+    for (var character = 0; character < CLASSES.length; character++) {
+      // Letters and digits are the same as the ones in the physical names.
+      if (PhysicalName.isBody(character))
+        CLASSES[character] = character >= '0' && character <= '9'
+          ? DIGIT
+          : LETTER;
+    }
+    CLASSES['_'] = LETTER;
+    for (final var character : " \t\r\n".toCharArray())
+      CLASSES[character] = WHITESPACE;
+    CLASSES['"'] = QUOTE;
+    for (final var character : "+-*/%=<>!&|^~?:".toCharArray())
+      CLASSES[character] = OPERATOR;
+    punctuation('(', Tokens.OPENING_PARENTHESIS);
+    punctuation(')', Tokens.CLOSING_PARENTHESIS);
+    punctuation('{', Tokens.OPENING_BRACE);
+    punctuation('}', Tokens.CLOSING_BRACE);
+    punctuation('[', Tokens.OPENING_BRACKET);
+    punctuation(']', Tokens.CLOSING_BRACKET);
+    punctuation(';', Tokens.SEMICOLON);
+    punctuation(',', Tokens.COMMA);
+    punctuation('.', Tokens.DOT);
+  }
+
+  /**
+   * Registers a punctuation character.
+   *
+   * @param character Registered character.
+   * @param kind      Kind of the token formed by the character.
+   */
+  private static void punctuation(final char character, final int kind) {
+    CLASSES[character]      = PUNCTUATION;
+    PUNCTUATIONS[character] = kind;
+  }
+
+  /**
+   * Contents of the lexed source.
+   */
+  private final Contents contents;
+
+  /**
+   * Lexed tokens.
+   */
+  private final Tokens tokens;
+
+  /**
+   * Index of the currently lexed byte.
+   */
+  private int current;
+
+  /**
+   * Lexes the given contents.
+   *
+   * @param  contents Contents of the lexed source.
+   * @return          Tokens in the source, or error message.
+   */
+  public static Result<Tokens, String> lex(final Contents contents) {
+    return Metrics.measure("lex", contents.path, () -> {
+      final var event = new Events.Lex();
+      event.begin();
+      final var lexed = new Lexer(contents).lex();
+      event.finish(contents.path, contents.size());
+      if (lexed.isSuccess()) Metrics.count("tokens", lexed.value().count());
+      return lexed;
+    });
+  }
+
+  /**
+   * Constructs a lexer.
+   *
+   * @param contents Contents of the lexed source.
+   */
+  private Lexer(final Contents contents) {
+    this.contents = contents;
+    // There is roughly a token for every 4 bytes in a typical source.
+    tokens  = new Tokens(contents, contents.size() / 4 + 1);
+    current = 0;
+  }
+
+  /**
+   * Lexes all the bytes.
+   *
+   * @return Lexed tokens, or error message.
+   */
+  private Result<Tokens, String> lex() {
+    final var size = contents.size();
+    while (current < size) {
+      final var start     = current;
+      final var character = contents.at(current++);
+      switch (classify(character)) {
+      case WHITESPACE -> {}
+      case LETTER -> {
+        skipWord();
+        tokens.add(Tokens.IDENTIFIER, start, current - start);
+      }
+      case DIGIT -> {
+        skipWord();
+        tokens.add(Tokens.NUMBER, start, current - start);
+      }
+      case QUOTE -> {
+        if (!skipString()) return Result.failure(
+          "%s: Unterminated string!".formatted(contents.locate(start)));
+        tokens.add(Tokens.STRING, start, current - start);
+      }
+      case OPERATOR -> {
+        // Skip the comment, which continues until the end of the line.
+        if (isCommentStart(start)) {
+          while (current < size && contents.at(current) != '\n') current++;
+          break;
+        }
+        while (current < size && classify(contents.at(current)) == OPERATOR
+          && !isCommentStart(current))
+          current++;
+        tokens.add(Tokens.OPERATOR, start, current - start);
+      }
+      case PUNCTUATION -> tokens.add(PUNCTUATIONS[character], start, 1);
+      default -> {
+        return Result.failure("%s: Unknown character `0x%02X`!"
+          .formatted(contents.locate(start), character & 0xFF));
+      }
+      }
+    }
+    return Result.success(tokens);
+  }
+
+  /**
+   * Skips the rest of an identifier or a number.
+   */
+  private void skipWord() {
+    while (current < contents.size()) {
+      final var found = classify(contents.at(current));
+      if (found != LETTER && found != DIGIT) break;
+      current++;
+    }
+  }
+
+  /**
+   * Skips the rest of a string, which ends with a quotation mark on the same
+   * line. Any character can be escaped with a backslash.
+   *
+   * @return Whether the string is terminated.
+   */
+  private boolean skipString() {
+    while (current < contents.size()) {
+      final var character = contents.at(current++);
+      if (character == '"') return true;
+      if (character == '\n') return false;
+      if (character == '\\') current++;
+    }
+    return false;
+  }
+
+  /**
+   * @param  index Index of the checked byte.
+   * @return       Whether a comment starts at the given byte.
+   */
+  private boolean isCommentStart(final int index) {
+    return contents.at(index) == '/' && index + 1 < contents.size()
+      && contents.at(index + 1) == '/';
+  }
+
+  /**
+   * @param  character Classified byte.
+   * @return           Class of the given byte.
+   */
+  private static byte classify(final byte character) {
+    // Bytes outside the ASCII range are negative.
+    if (character < 0) return INVALID;
+    return CLASSES[character];
+  }
+
+  /**
+   * Runs all the unit tests for {@link Lexer}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether an empty source is lexed.
+    tester.run(() -> {
+      final var lexed = lex("");
+      return lexed.isSuccess() && lexed.value().count() == 0;
+    });
+
+    // Test whether whitespace and comments are skipped.
+    tester.run(() -> {
+      final var lexed = lex(" \t\r\n// Comment\n  // Other comment");
+      return lexed.isSuccess() && lexed.value().count() == 0;
+    });
+
+    // Test whether the tokens are lexed with the correct kinds.
+    tester.run(() -> {
+      final var lexed = lex("_a1 12u \"s\\\"\" += ( ) { } [ ] ; , .");
+      if (lexed.isFailure()) return false;
+      final var tokens = lexed.value();
+      final var kinds  = new int[] { Tokens.IDENTIFIER, Tokens.NUMBER,
+        Tokens.STRING, Tokens.OPERATOR, Tokens.OPENING_PARENTHESIS,
+        Tokens.CLOSING_PARENTHESIS, Tokens.OPENING_BRACE, Tokens.CLOSING_BRACE,
+        Tokens.OPENING_BRACKET, Tokens.CLOSING_BRACKET, Tokens.SEMICOLON,
+        Tokens.COMMA, Tokens.DOT };
+      if (tokens.count() != kinds.length) return false;
+      for (var i = 0; i < kinds.length; i++)
+        if (tokens.kind(i) != kinds[i]) return false;
+      return true;
+    });
+
+    // Test whether the positions of the tokens are correct.
+    tester.run(() -> {
+      final var lexed = lex("Name(12)");
+      return lexed.isSuccess() && lexed.value().start(0) == 0
+        && lexed.value().length(0) == 4 && lexed.value().start(2) == 5
+        && lexed.value().length(2) == 2 && lexed.value().is(0, "Name");
+    });
+
+    // Test whether operators end before a comment.
+    tester.run(() -> {
+      final var lexed = lex("a=//b");
+      return lexed.isSuccess() && lexed.value().count() == 2
+        && lexed.value().length(1) == 1;
+    });
+
+    // Test whether unterminated strings are checked.
+    tester.run(() -> lex("\"s\n\"").isFailure() && lex("\"s\\\"").isFailure());
+
+    // Test whether unknown characters are checked.
+    tester.run(() -> lex("a @").isFailure() && lex("\u00C7").isFailure());
+
+    // Test whether non-ASCII characters are allowed in strings and comments.
+    tester.run(() -> lex("\"\u00C7\" // \u00C7").isSuccess());
+
+    // Test whether the tokens grow past their initial capacity.
+    tester.run(() -> {
+      final var lexed = lex("a;".repeat(100));
+      return lexed.isSuccess() && lexed.value().count() == 200;
+    });
+  }
+
+  /**
+   * Lexes the given text.
+   *
+   * @param  text Lexed text.
+   * @return      Tokens in the text, or error message.
+   */
+  private static Result<Tokens, String> lex(final String text) {
+    return lex(Contents.wrap(Path.of("Test.tr"),
+      text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Lexer}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark lexing a source of about a megabyte.
+    final var source = Contents.wrap(Path.of("Benchmark.tr"),
+      "Name = call(Argument, 1234) + \"text\"; // Comment\n".repeat(20000)
+        .getBytes(StandardCharsets.UTF_8));
+    bencher.run("Lexer.lex 1 MB", source.size(), () -> lex(source));
+  }
+}
@@ -0,0 +1,333 @@
+package rainfall.syntax;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import rainfall.utility.Bencher;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+
+/**
+ * Groups the tokens of a source into a syntax tree of statements, blocks and
+ * groups.
+ *
+ * @author calestialgem
+ */
+public final class Parser {
+  /**
+   * Maximum number of the groups and blocks that are nested in each other.
+   * Parsing is recursive; thus, deeper nesting would overflow the stack.
+   */
+  private static final int MAX_DEPTH = 256;
+
+  /**
+   * Parsed tokens.
+   */
+  private final Tokens tokens;
+
+  /**
+   * Parsed tree.
+   */
+  private final Tree tree;
+
+  /**
+   * Index of the currently parsed token.
+   */
+  private int current;
+
+  /**
+   * Number of the groups and blocks that enclose the current token.
+   */
+  private int depth;
+
+  /**
+   * Parses the given tokens.
+   *
+   * @param  tokens Tokens of the parsed source.
+   * @return        Tree of the source, or error message.
+   */
+  public static Result<Tree, String> parse(final Tokens tokens) {
+    return Metrics.measure("parse", tokens.contents.path, () -> {
+      final var event = new Events.Parse();
+      event.begin();
+      final var parser = new Parser(tokens);
+      final var parsed = parser.source().map(source -> parser.tree);
+      event.finish(tokens.contents.path, tokens.contents.size());
+      if (parsed.isSuccess()) Metrics.count("nodes", parsed.value().count());
+      return parsed;
+    });
+  }
+
+  /**
+   * Constructs a parser.
+   *
+   * @param tokens Tokens of the parsed source.
+   */
+  private Parser(final Tokens tokens) {
+    this.tokens = tokens;
+    // There is a leaf for every token and a few more nodes for the groups.
+    tree    = new Tree(tokens, tokens.count() + tokens.count() / 4 + 1);
+    current = 0;
+    depth   = 0;
+  }
+
+  /**
+   * Parses all the statements in the source.
+   *
+   * @return Success, or error message.
+   */
+  private Result<Void, String> source() {
+    final var node = tree.open(Tree.SOURCE, 0);
+    while (has()) {
+      if (isClosing()) return unexpected();
+      final var statement = statement();
+      if (statement.isFailure()) return statement;
+    }
+    tree.close(node);
+    return Result.success();
+  }
+
+  /**
+   * Parses a statement, which ends with a semicolon or a block.
+   *
+   * @return Success, or error message.
+   */
+  private Result<Void, String> statement() {
+    final var node = tree.open(Tree.STATEMENT, current);
+    while (true) {
+      if (!has()) return Result.failure("%s: Expected `;` at the end!"
+        .formatted(locate(tokens.count() - 1)));
+
+      // The semicolon ends the statement, but it is not a part of the tree.
+      if (tokens.kind(current) == Tokens.SEMICOLON) {
+        current++;
+        break;
+      }
+
+      // A block also ends the statement.
+      if (tokens.kind(current) == Tokens.OPENING_BRACE) {
+        final var block = block();
+        if (block.isFailure()) return block;
+        break;
+      }
+
+      final var item = item();
+      if (item.isFailure()) return item;
+    }
+    tree.close(node);
+    return Result.success();
+  }
+
+  /**
+   * Parses a token, a group or a block.
+   *
+   * @return Success, or error message.
+   */
+  private Result<Void, String> item() {
+    return switch (tokens.kind(current)) {
+    case Tokens.OPENING_PARENTHESIS -> group(Tokens.CLOSING_PARENTHESIS);
+    case Tokens.OPENING_BRACKET -> group(Tokens.CLOSING_BRACKET);
+    case Tokens.OPENING_BRACE -> block();
+    case Tokens.CLOSING_PARENTHESIS, Tokens.CLOSING_BRACKET,
+      Tokens.CLOSING_BRACE -> unexpected();
+    default -> {
+      tree.leaf(current++);
+      yield Result.success();
+    }
+    };
+  }
+
+  /**
+   * Parses the statements between braces.
+   *
+   * @return Success, or error message.
+   */
+  private Result<Void, String> block() {
+    if (depth == MAX_DEPTH) return tooDeep();
+    final var opening = current++;
+    final var node    = tree.open(Tree.BLOCK, opening);
+    depth++;
+    while (true) {
+      if (!has()) return unclosed(opening);
+      if (tokens.kind(current) == Tokens.CLOSING_BRACE) {
+        current++;
+        break;
+      }
+      if (isClosing()) return unexpected();
+      final var statement = statement();
+      if (statement.isFailure()) return statement;
+    }
+    depth--;
+    tree.close(node);
+    return Result.success();
+  }
+
+  /**
+   * Parses the items between parentheses or brackets.
+   *
+   * @param  closing Kind of the token that closes the group.
+   * @return         Success, or error message.
+   */
+  private Result<Void, String> group(final int closing) {
+    if (depth == MAX_DEPTH) return tooDeep();
+    final var opening = current++;
+    final var node    = tree.open(Tree.GROUP, opening);
+    depth++;
+    while (true) {
+      if (!has()) return unclosed(opening);
+      if (tokens.kind(current) == closing) {
+        current++;
+        break;
+      }
+      final var item = item();
+      if (item.isFailure()) return item;
+    }
+    depth--;
+    tree.close(node);
+    return Result.success();
+  }
+
+  /**
+   * @return Whether the current token closes a group or a block.
+   */
+  private boolean isClosing() {
+    final var kind = tokens.kind(current);
+    return kind == Tokens.CLOSING_PARENTHESIS || kind == Tokens.CLOSING_BRACKET
+      || kind == Tokens.CLOSING_BRACE;
+  }
+
+  /**
+   * Reports the current token as unexpected.
+   *
+   * @return Error message.
+   */
+  private Result<Void, String> unexpected() {
+    return Result.failure("%s: Unexpected `%s`!".formatted(locate(current),
+      tokens.text(current)));
+  }
+
+  /**
+   * Reports an opening token that is not closed.
+   *
+   * @param  opening Index of the opening token.
+   * @return         Error message.
+   */
+  private Result<Void, String> unclosed(final int opening) {
+    return Result.failure("%s: `%s` is not closed!".formatted(locate(opening),
+      tokens.text(opening)));
+  }
+
+  /**
+   * Reports the current token as nested too deep.
+   *
+   * @return Error message.
+   */
+  private Result<Void, String> tooDeep() {
+    return Result.failure("%s: Nested deeper than %d groups and blocks!"
+      .formatted(locate(current), MAX_DEPTH));
+  }
+
+  /**
+   * @param  token Index of the located token.
+   * @return       Location of the token.
+   */
+  private String locate(final int token) {
+    return tokens.contents.locate(tokens.start(token));
+  }
+
+  /**
+   * @return Whether there is a current token.
+   */
+  private boolean has() { return current < tokens.count(); }
+
+  /**
+   * Runs all the unit tests for {@link Parser}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether an empty source is parsed.
+    tester.run(() -> {
+      final var parsed = parse("");
+      return parsed.isSuccess() && parsed.value().count() == 1
+        && parsed.value().kind(0) == Tree.SOURCE;
+    });
+
+    // Test whether statements are parsed as the children of the source.
+    tester.run(() -> {
+      final var parsed = parse("a b; c;");
+      if (parsed.isFailure()) return false;
+      final var tree = parsed.value();
+      return tree.count() == 6 && tree.end(0) == 6
+        && tree.kind(1) == Tree.STATEMENT && tree.end(1) == 4
+        && tree.kind(4) == Tree.STATEMENT && tree.reference(4) == 3
+        && tree.kind(5) == Tree.TOKEN && tree.reference(5) == 3;
+    });
+
+    // Test whether nested groups and blocks are parsed.
+    tester.run(() -> {
+      final var parsed = parse("f(a, [b]) { c; { d; } }");
+      if (parsed.isFailure()) return false;
+      final var tree     = parsed.value();
+      var       children = 0;
+      for (var child = tree.first(1); child < tree.end(1);
+        child = tree.end(child))
+        children++;
+      return children == 3 && tree.kind(3) == Tree.GROUP
+        && tree.kind(tree.end(3)) == Tree.BLOCK;
+    });
+
+    // Test whether a block ends a statement.
+    tester.run(() -> {
+      final var parsed = parse("a {} b;");
+      return parsed.isSuccess() && parsed.value().kind(4) == Tree.STATEMENT;
+    });
+
+    // Test whether a missing semicolon is checked.
+    tester.run(() -> parse("a").isFailure());
+
+    // Test whether unclosed groups and blocks are checked.
+    tester.run(() -> parse("a (;").isFailure() && parse("a {").isFailure());
+
+    // Test whether nesting up to the limit is parsed.
+    tester.run(() -> parse("a %s%s;".formatted("(".repeat(MAX_DEPTH),
+      ")".repeat(MAX_DEPTH))).isSuccess());
+
+    // Test whether deep nesting is checked instead of overflowing the stack.
+    tester.run(() -> parse("a %s%s;".formatted("([".repeat(50000),
+      "])".repeat(50000))).isFailure() && parse("{".repeat(100000))
+        .isFailure());
+
+    // Test whether mismatched closings are checked.
+    tester.run(() -> parse("a (];").isFailure() && parse("a };").isFailure()
+      && parse("}").isFailure());
+  }
+
+  /**
+   * Lexes and parses the given text.
+   *
+   * @param  text Parsed text.
+   * @return      Tree of the text, or error message.
+   */
+  private static Result<Tree, String> parse(final String text) {
+    return Lexer.lex(Contents.wrap(Path.of("Test.tr"),
+      text.getBytes(StandardCharsets.UTF_8))).flatMap(Parser::parse);
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Parser}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark parsing a source of about a megabyte.
+    final var source = Contents.wrap(Path.of("Benchmark.tr"),
+      "Name = call(Argument, [1234]) + \"text\"; { Block; } // Comment\n"
+        .repeat(16000).getBytes(StandardCharsets.UTF_8));
+    final var tokens = Lexer.lex(source).value();
+    bencher.run("Parser.parse 1 MB", source.size(), () -> parse(tokens));
+  }
+}
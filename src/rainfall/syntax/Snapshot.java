@@ -0,0 +1,1196 @@
+package rainfall.syntax;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import rainfall.utility.Bencher;
+import rainfall.utility.Box;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+import rainfall.workspace.Contents;
+import rainfall.workspace.Loader;
+import rainfall.workspace.Module;
+import rainfall.workspace.Package;
+import rainfall.workspace.PhysicalName;
+import rainfall.workspace.Source;
+import rainfall.workspace.Workspace;
+
+/**
+ * Trees of a workspace that was checked in a previous launch of the compiler,
+ * which are stored in a single file in the workspace directory. Restoring a
+ * package copies the arrays of its tokens and trees instead of lexing and
+ * parsing its sources again. The snapshot is the persistent cache of the
+ * models; it is not keyed by the hashes of the imported packages, as the
+ * tree of a source only depends on its own bytes.
+ *
+ * <p>
+ * The file starts with a table of the interned names, which is followed by an
+ * index of the packages and the packages themselves. The file is mapped to the
+ * memory, which is safe as a new snapshot replaces the file instead of writing
+ * over it. Only the names of the packages are decoded while opening it; a
+ * package is decoded when it is restored. A source is fresh if its size and
+ * modification time are the same, or if its hash is the same when they are
+ * not. A module is fresh if its directory was not modified; thus, adding or
+ * removing a source loads the module again. Packages that are not fresh are
+ * loaded from their sources.
+ *
+ * @author calestialgem
+ */
+public final class Snapshot {
+  /**
+   * Path to the snapshot file relative to the workspace directory. The name
+   * of the directory starts with a dot; thus, it is ignored while loading the
+   * workspace.
+   */
+  public static final Path FILE = Path.of(".rainfall", "snapshot");
+
+  /**
+   * First bytes of a snapshot, which are the ASCII characters {@code RFSP}.
+   */
+  private static final int MAGIC = 0x52465350;
+
+  /**
+   * Version of the snapshot. Must be incremented when the encoding of the
+   * snapshot or the trees change, which ignores the snapshots stored by the
+   * older versions.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Tag of a file package.
+   */
+  private static final int FILE_PACKAGE = 0;
+
+  /**
+   * Tag of a directory package.
+   */
+  private static final int DIRECTORY_PACKAGE = 1;
+
+  /**
+   * Microseconds before loading the workspace where a modification might not
+   * change the modification time of a file, as file systems store the times
+   * with a coarse precision.
+   */
+  private static final long RACY = TimeUnit.SECONDS.toMicros(2);
+
+  /**
+   * Opened snapshots mapped to the paths to their files. Snapshots and the
+   * packages restored from them are kept for the life of the process; thus,
+   * the launches done by a daemon only check whether the packages are fresh,
+   * without decoding them again.
+   */
+  private static final Map<Path, Snapshot> OPENED = new ConcurrentHashMap<>();
+
+  /**
+   * Path to the workspace directory.
+   */
+  private final Path directory;
+
+  /**
+   * Read-only buffer that is mapped to the snapshot file.
+   */
+  private final ByteBuffer bytes;
+
+  /**
+   * Identity of the snapshot file, which changes when the file is replaced.
+   */
+  private final List<Object> identity;
+
+  /**
+   * Time of starting to load the workspace that is stored in the snapshot, in
+   * microseconds since the epoch.
+   */
+  private final long started;
+
+  /**
+   * Index of the first byte of the offsets of the names in the name table.
+   */
+  private final int table;
+
+  /**
+   * Names in the name table that are decoded, or null for the ones that are
+   * not decoded yet.
+   */
+  private final PhysicalName[] interned;
+
+  /**
+   * Indices of the first bytes of the packages mapped to their names.
+   */
+  private final Map<PhysicalName, Integer> packages;
+
+  /**
+   * Packages that are decoded, which are given again while they are fresh.
+   */
+  private final Map<PhysicalName, Package<Tree>> decoded;
+
+  /**
+   * Workspace that is restored from a snapshot.
+   *
+   * @param  workspace Restored workspace, which might only have some of the
+   *                     packages in the directory.
+   * @param  listed    Names of all the packages in the directory, including
+   *                     the ones that were not loaded.
+   * @param  changed   Whether some of the packages were loaded from their
+   *                     sources or removed; thus, the snapshot should be
+   *                     stored again.
+   * @param  started   Time of starting to load the workspace, in microseconds
+   *                     since the epoch.
+   * @author           calestialgem
+   */
+  public record Restored(Workspace<Tree> workspace, Set<PhysicalName> listed,
+    boolean changed, long started) {}
+
+  /**
+   * Loads the given packages in the given directory and the packages they
+   * import, without loading the others. Packages are loaded in rounds, where
+   * each round loads the packages that are imported by the previous round but
+   * not loaded yet. Fresh packages are restored from the snapshot, and the
+   * others are loaded from their sources.
+   *
+   * @param  pool      Pool that runs the loading tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  roots     Names of the needed packages. All the packages are
+   *                     loaded if it is empty. Names that are not in the
+   *                     directory are ignored.
+   * @param  imports   Function that finds the packages imported by a source
+   *                     from its tree.
+   * @param  modeler   Function that constructs the tree of a source from its
+   *                     contents.
+   * @return           Loaded workspace, or error message.
+   */
+  public static Result<Restored, String> load(final ForkJoinPool pool,
+    final Path directory, final Collection<PhysicalName> roots,
+    final Function<Tree, Result<List<PhysicalName>, String>> imports,
+    final Function<Contents, Result<Tree, String>> modeler) {
+    final var started = micros(FileTime.from(Instant.now()));
+    final var names   = Loader.names(directory);
+    if (names.isFailure()) return names.propagate();
+
+    // A name that is both a file and a directory is left to the loader, which
+    // reports it.
+    final var listed   = new LinkedHashSet<>(names.value());
+    final var opened   = open(directory);
+    final var snapshot = opened.isSuccess()
+      && listed.size() == names.value().size() ? opened.value() : null;
+
+    final var packages = new HashMap<PhysicalName, Package<Tree>>();
+    final var errors   = new ArrayList<String>();
+    var       changed  = snapshot == null;
+    var       pending  = new ArrayList<PhysicalName>();
+    for (final var name : roots.isEmpty() ? listed : roots)
+      if (listed.contains(name)) pending.add(name);
+    while (!pending.isEmpty()) {
+      if (materialize(pool, directory, snapshot, pending, modeler, packages,
+        errors))
+        changed = true;
+
+      // Continue with the imported packages that are not loaded yet. Errors
+      // of the imports are reported while checking.
+      final var imported = new LinkedHashSet<PhysicalName>();
+      for (final var name : pending) {
+        final var loaded = packages.get(name);
+        if (loaded == null) continue;
+        for (final var source : loaded.sources()) {
+          final var found = imports.apply(source.model());
+          if (found.isSuccess()) for (final var importedName : found.value())
+            if (listed.contains(importedName)
+              && !packages.containsKey(importedName))
+              imported.add(importedName);
+        }
+      }
+      pending = new ArrayList<>(imported);
+    }
+    if (!errors.isEmpty())
+      return Result.failure(String.join(System.lineSeparator(), errors));
+
+    // Packages that were removed from a fully loaded workspace change it.
+    if (roots.isEmpty() && snapshot != null
+      && snapshot.packages.size() != packages.size())
+      changed = true;
+    return Result.success(new Restored(new Workspace<>(Map.copyOf(packages)),
+      Set.copyOf(listed), changed, started));
+  }
+
+  /**
+   * Loads packages in the given directory. Fresh packages are restored from
+   * the snapshot, and the others are loaded from their sources.
+   *
+   * @param  pool      Pool that runs the loading tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  snapshot  Snapshot of the workspace, or null if there is not a
+   *                     usable one.
+   * @param  names     Names of the loaded packages, sorted by their paths.
+   * @param  modeler   Function that constructs the tree of a source from its
+   *                     contents.
+   * @param  packages  Loaded packages, which the packages are added to.
+   * @param  errors    Errors of the packages that could not be loaded, which
+   *                     are added in the order of the names.
+   * @return           Whether some of the packages were loaded from their
+   *                     sources.
+   */
+  private static boolean materialize(final ForkJoinPool pool,
+    final Path directory, final Snapshot snapshot,
+    final List<PhysicalName> names,
+    final Function<Contents, Result<Tree, String>> modeler,
+    final Map<PhysicalName, Package<Tree>> packages,
+    final List<String> errors) {
+    if (snapshot != null) {
+      final var restored = Metrics.wrap("snapshot", directory,
+        () -> snapshot.restore(pool, names));
+      Metrics.count("restored packages", restored.size());
+      packages.putAll(restored);
+    }
+
+    final var stale = new ArrayList<PhysicalName>();
+    for (final var name : names) if (!packages.containsKey(name))
+      stale.add(name);
+    if (stale.isEmpty()) return false;
+    final var loaded = Loader.reload(pool, directory, stale, modeler);
+    for (final var name : stale) {
+      final var entry = loaded.get(name);
+      if (entry.isFailure()) errors.add(entry.error());
+      else if (entry.value().isFull()) packages.put(name, entry.value().get());
+    }
+    return true;
+  }
+
+  /**
+   * Stores a restored workspace as the snapshot of its directory. Packages in
+   * the directory that were not loaded are copied from the previous snapshot.
+   * The snapshot is first written to a temporary file, then moved in place;
+   * thus, concurrent launches never see partially written snapshots. Failing
+   * to store is ignored because it only costs loading the packages from their
+   * sources in the next launch.
+   *
+   * @param directory Path to the workspace directory.
+   * @param restored  Stored workspace.
+   */
+  public static void store(final Path directory, final Restored restored) {
+    Metrics.measure("store", directory, () -> {
+      try {
+        write(directory, restored);
+      } catch (IOException exception) {
+        // Ignore, the packages will be loaded from their sources.
+        return null;
+      }
+
+      // Keep the stored packages as decoded; thus, the next launch in the
+      // same process does not decode them.
+      final var opened = open(directory);
+      if (opened.isSuccess())
+        opened.value().decoded.putAll(restored.workspace().packages());
+      return null;
+    });
+  }
+
+  /**
+   * Maps the snapshot of a workspace to the memory, and decodes the names of
+   * its packages.
+   *
+   * @param  directory Path to the workspace directory.
+   * @return           Opened snapshot, or error message if it does not exist,
+   *                     is of another version or is corrupt.
+   */
+  private static Result<Snapshot, String> open(final Path directory) {
+    final var file = directory.resolve(FILE);
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException exception) {
+      return Result
+        .failure("There is not a snapshot at `%s`!".formatted(file));
+    }
+
+    // Give the snapshot that was opened before if the file is the same.
+    final var identity = Arrays.<Object>asList(attributes.fileKey(),
+      attributes.lastModifiedTime(), attributes.size());
+    final var opened   = OPENED.get(file);
+    if (opened != null && opened.identity.equals(identity))
+      return Result.success(opened);
+
+    final ByteBuffer bytes;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // Mapping stays valid after the channel is closed.
+      bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException | IllegalArgumentException exception) {
+      return Result
+        .failure("Could not read the snapshot `%s`!".formatted(file));
+    }
+    try {
+      if (bytes.getInt(0) != MAGIC || bytes.getInt(Integer.BYTES) != VERSION)
+        return Result.failure(
+          "Snapshot `%s` is of another version!".formatted(file));
+      final var snapshot = new Snapshot(directory, bytes, identity);
+      OPENED.put(file, snapshot);
+      return Result.success(snapshot);
+    } catch (IndexOutOfBoundsException | IllegalArgumentException
+      | BufferUnderflowException exception) {
+      return Result.failure("Snapshot `%s` is corrupt!".formatted(file));
+    }
+  }
+
+  /**
+   * Constructs a snapshot by decoding its header and its package index.
+   *
+   * @param directory Path to the workspace directory.
+   * @param bytes     Read-only buffer that is mapped to the snapshot file.
+   * @param identity  Identity of the snapshot file.
+   */
+  private Snapshot(final Path directory, final ByteBuffer bytes,
+    final List<Object> identity) {
+    this.directory = directory;
+    this.bytes     = bytes;
+    this.identity  = identity;
+    decoded        = new ConcurrentHashMap<>();
+    final var header = bytes.duplicate().position(2 * Integer.BYTES);
+    started  = header.getLong();
+    interned = new PhysicalName[count(header, Integer.BYTES)];
+    table    = header.position();
+
+    // Skip the name table, whose last offset is the number of bytes in it.
+    header.position(table + interned.length * Integer.BYTES);
+    final var length = header.getInt();
+    header.position(header.position() + length);
+
+    // Map the packages to the offsets, which are relative to the end of the
+    // package index.
+    final var size = count(header, 2 * Integer.BYTES);
+    final var body = header.position() + size * 2 * Integer.BYTES;
+    packages = new HashMap<>();
+    for (var i = 0; i < size; i++)
+      packages.put(name(header.getInt()), body + header.getInt());
+  }
+
+  /**
+   * Restores the fresh packages with the given names, where each package is
+   * restored in a separate fork-join task.
+   *
+   * @param  pool  Pool that runs the restoring tasks.
+   * @param  names Names of the restored packages.
+   * @return       Packages that are fresh, mapped to their names.
+   */
+  private Map<PhysicalName, Package<Tree>> restore(final ForkJoinPool pool,
+    final Iterable<PhysicalName> names) {
+    return pool.invoke(ForkJoinTask.adapt(() -> {
+      final var tasks =
+        new HashMap<PhysicalName, ForkJoinTask<Box<Package<Tree>>>>();
+      for (final var name : names) if (packages.containsKey(name))
+        tasks.put(name, ForkJoinTask.adapt(
+          () -> Metrics.measure("restore", name, () -> restore(name))).fork());
+      final var restored = new HashMap<PhysicalName, Package<Tree>>();
+      tasks.forEach((name, task) -> {
+        final var restoredPackage = task.join();
+        if (restoredPackage.isFull()) restored.put(name, restoredPackage.get());
+      });
+      return restored;
+    }));
+  }
+
+  /**
+   * Restores a package. A package that was decoded before is given again if
+   * it is still fresh.
+   *
+   * @param  name Name of the package, which must be in the snapshot.
+   * @return      Restored package, or nothing if it is not fresh or it is
+   *                corrupt.
+   */
+  private Box<Package<Tree>> restore(final PhysicalName name) {
+    try {
+      final var buffer   = bytes.duplicate().position(packages.get(name));
+      final var tag      = buffer.getInt();
+      final var existing = decoded.get(name);
+      if (existing != null) {
+        final var fresh = tag == FILE_PACKAGE
+          ? isFreshSource(buffer, directory)
+          : isFreshModule(buffer, directory);
+        return fresh ? Box.full(existing) : Box.empty();
+      }
+
+      Box<Package<Tree>> restored = Box.empty();
+      if (tag == FILE_PACKAGE) {
+        final var source = source(buffer, directory);
+        if (source.isFull() && source.get().name() == name)
+          restored = Box.full(new Package.File<>(source.get()));
+      } else if (tag == DIRECTORY_PACKAGE) {
+        final var module = module(buffer, directory);
+        if (module.isFull() && module.get().name() == name)
+          restored = Box.full(new Package.Directory<>(module.get()));
+      }
+      if (restored.isFull()) decoded.put(name, restored.get());
+      return restored;
+    } catch (IndexOutOfBoundsException | IllegalArgumentException
+      | BufferUnderflowException exception) {
+      return Box.empty();
+    }
+  }
+
+  /**
+   * Restores a module at the position of the given buffer, and advances the
+   * buffer past it.
+   *
+   * @param  buffer Buffer whose position is at the module.
+   * @param  parent Path to the directory that contains the module directory.
+   * @return        Restored module, or nothing if it is not fresh.
+   */
+  private Box<Module<Tree>> module(final ByteBuffer buffer,
+    final Path parent) {
+    final var name     = name(buffer.getInt());
+    final var modified = buffer.getLong();
+    final var path     = parent.resolve(name.value);
+    if (modified + RACY >= started || modified(path) != modified)
+      return Box.empty();
+
+    final var sources = new HashMap<PhysicalName, Source<Tree>>();
+    for (var i = count(buffer, Integer.BYTES); i > 0; i--) {
+      final var source = source(buffer, path);
+      if (source.isEmpty()) return Box.empty();
+      sources.put(source.get().name(), source.get());
+    }
+    final var submodules = new HashMap<PhysicalName, Module<Tree>>();
+    for (var i = count(buffer, Integer.BYTES); i > 0; i--) {
+      final var submodule = module(buffer, path);
+      if (submodule.isEmpty()) return Box.empty();
+      submodules.put(submodule.get().name(), submodule.get());
+    }
+    return Box.full(
+      new Module<>(name, Map.copyOf(sources), Map.copyOf(submodules)));
+  }
+
+  /**
+   * Restores a source at the position of the given buffer, and advances the
+   * buffer past it.
+   *
+   * @param  buffer Buffer whose position is at the source.
+   * @param  parent Path to the directory that contains the source file.
+   * @return        Restored source, or nothing if it is not fresh.
+   */
+  private Box<Source<Tree>> source(final ByteBuffer buffer,
+    final Path parent) {
+    final var name     = name(buffer.getInt());
+    final var size     = buffer.getLong();
+    final var modified = buffer.getLong();
+    final var hash     = new byte[32];
+    buffer.get(hash);
+    final var path     = parent.resolve(name.value + Loader.EXTENSION);
+    final var contents = fresh(path, size, modified, hash);
+    if (contents.isEmpty()) return Box.empty();
+
+    // Copy the arrays of the tokens and the nodes, which follow their counts.
+    final var tokenCount = count(buffer, 3 * Integer.BYTES);
+    final var tokens     = new Tokens(contents.get(), ints(buffer, tokenCount),
+      ints(buffer, tokenCount), ints(buffer, tokenCount));
+    final var nodeCount  = count(buffer, 3 * Integer.BYTES);
+    final var tree       = new Tree(tokens, ints(buffer, nodeCount),
+      ints(buffer, nodeCount), ints(buffer, nodeCount));
+    Metrics.count("restored files", 1);
+    return Box.full(new Source<>(name, path, tree));
+  }
+
+  /**
+   * Checks whether a module at the position of the given buffer is fresh
+   * without decoding it, and advances the buffer past it.
+   *
+   * @param  buffer Buffer whose position is at the module.
+   * @param  parent Path to the directory that contains the module directory.
+   * @return        Whether the module is fresh.
+   */
+  private boolean isFreshModule(final ByteBuffer buffer, final Path parent) {
+    final var name     = name(buffer.getInt());
+    final var modified = buffer.getLong();
+    final var path     = parent.resolve(name.value);
+    if (modified + RACY >= started || modified(path) != modified)
+      return false;
+    for (var i = count(buffer, Integer.BYTES); i > 0; i--)
+      if (!isFreshSource(buffer, path)) return false;
+    for (var i = count(buffer, Integer.BYTES); i > 0; i--)
+      if (!isFreshModule(buffer, path)) return false;
+    return true;
+  }
+
+  /**
+   * Checks whether a source at the position of the given buffer is fresh
+   * without decoding it, and advances the buffer past it.
+   *
+   * @param  buffer Buffer whose position is at the source.
+   * @param  parent Path to the directory that contains the source file.
+   * @return        Whether the source is fresh.
+   */
+  private boolean isFreshSource(final ByteBuffer buffer, final Path parent) {
+    final var name     = name(buffer.getInt());
+    final var size     = buffer.getLong();
+    final var modified = buffer.getLong();
+    final var hash     = new byte[32];
+    buffer.get(hash);
+    final var path     = parent.resolve(name.value + Loader.EXTENSION);
+
+    // Skip the arrays of the tokens and the nodes.
+    final var tokenCount = count(buffer, 3 * Integer.BYTES);
+    buffer.position(buffer.position() + tokenCount * 3 * Integer.BYTES);
+    final var nodeCount  = count(buffer, 3 * Integer.BYTES);
+    buffer.position(buffer.position() + nodeCount * 3 * Integer.BYTES);
+
+    if (isUnchanged(path, size, modified)) return true;
+    final var contents = Contents.read(path);
+    return contents.isSuccess()
+      && Arrays.equals(hash(contents.value()), hash);
+  }
+
+  /**
+   * Maps a source file to the memory if it did not change since the snapshot
+   * was stored.
+   *
+   * @param  path     Path to the source file.
+   * @param  size     Number of bytes in the stored source.
+   * @param  modified Modification time of the stored source in microseconds
+   *                    since the epoch.
+   * @param  hash     Hash of the contents of the stored source.
+   * @return          Contents of the source, or nothing if it changed.
+   */
+  private Box<Contents> fresh(final Path path, final long size,
+    final long modified, final byte[] hash) {
+    // Read the contents before the attributes; thus, a modification after
+    // reading changes the attributes, and makes the contents hashed.
+    final var contents = Contents.read(path);
+    if (contents.isFailure()) return Box.empty();
+    if (isUnchanged(path, size, modified)
+      || Arrays.equals(hash(contents.value()), hash))
+      return Box.full(contents.value());
+    return Box.empty();
+  }
+
+  /**
+   * Checks whether a source file has the same size and modification time as
+   * the stored one. A file that is modified right before the workspace was
+   * loaded might have changed again without changing its modification time;
+   * thus, it is never considered unchanged.
+   *
+   * @param  path     Path to the source file.
+   * @param  size     Number of bytes in the stored source.
+   * @param  modified Modification time of the stored source in microseconds
+   *                    since the epoch.
+   * @return          Whether the file is unchanged.
+   */
+  private boolean isUnchanged(final Path path, final long size,
+    final long modified) {
+    if (modified + RACY >= started) return false;
+    try {
+      final var attributes =
+        Files.readAttributes(path, BasicFileAttributes.class);
+      return attributes.isRegularFile() && attributes.size() == size
+        && micros(attributes.lastModifiedTime()) == modified;
+    } catch (IOException exception) {
+      return false;
+    }
+  }
+
+  /**
+   * Decodes a name in the name table. Decoded names are remembered; thus, a
+   * name is decoded once even if many sources refer to it.
+   *
+   * @param  index Index of the name in the name table.
+   * @return       Decoded name.
+   */
+  private PhysicalName name(final int index) {
+    final var decoded = interned[index];
+    if (decoded != null) return decoded;
+
+    // Names are given as offsets into the bytes that follow the offsets.
+    final var start = bytes.getInt(table + index * Integer.BYTES);
+    final var end   = bytes.getInt(table + (index + 1) * Integer.BYTES);
+    if (end < start) throw new IllegalArgumentException("Corrupt name!");
+    final var value = new byte[end - start];
+    bytes.get(table + (interned.length + 1) * Integer.BYTES + start, value);
+    final var name =
+      PhysicalName.of(new String(value, StandardCharsets.US_ASCII));
+    if (name.isFailure()) throw new IllegalArgumentException(name.error());
+
+    // Concurrent tasks might decode the same name, which is fine as the names
+    // are interned.
+    interned[index] = name.value();
+    return name.value();
+  }
+
+  /**
+   * Writes the snapshot of a restored workspace.
+   *
+   * @param  directory   Path to the workspace directory.
+   * @param  restored    Stored workspace.
+   * @throws IOException If the snapshot could not be written.
+   */
+  private static void write(final Path directory, final Restored restored)
+    throws IOException {
+    final var names    = new LinkedHashMap<PhysicalName, Integer>();
+    final var packages = restored.workspace().packages();
+    final var sorted   = new ArrayList<>(packages.keySet());
+    var       started  = restored.started();
+
+    // Intern the names of the previous snapshot first; thus, the packages that
+    // were not loaded are copied without changing the indices of their names.
+    final var previous = open(directory);
+    if (previous.isSuccess()) {
+      final var snapshot = previous.value();
+      try {
+        for (var i = 0; i < snapshot.interned.length; i++)
+          if (intern(names, snapshot.name(i)) != i)
+            throw new IllegalArgumentException("Repeated name!");
+        for (final var name : restored.listed())
+          if (!packages.containsKey(name)
+            && snapshot.packages.containsKey(name))
+            sorted.add(name);
+        started = Math.min(started, snapshot.started);
+      } catch (IndexOutOfBoundsException | IllegalArgumentException exception) {
+        names.clear();
+        sorted.retainAll(packages.keySet());
+        started = restored.started();
+      }
+    }
+
+    // Encode the packages, which interns their names.
+    final var body   = new ByteArrayOutputStream();
+    final var output = new DataOutputStream(body);
+    sorted.sort(Comparator.comparing(name -> name.value));
+    final var offsets = new int[sorted.size()];
+    for (var i = 0; i < sorted.size(); i++) {
+      offsets[i] = output.size();
+      final var encoded = packages.get(sorted.get(i));
+      if (encoded != null) encode(output, names, directory, encoded);
+      else output.write(previous.value().encoded(sorted.get(i)));
+    }
+
+    final var file = directory.resolve(FILE);
+    Files.createDirectories(file.getParent());
+    final var temporary = Files.createTempFile(file.getParent(), "snapshot",
+      null);
+    try {
+      try (var stream = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeLong(started);
+
+        // Write the offsets of the names, then the names, which are ASCII.
+        stream.writeInt(names.size());
+        var end = 0;
+        for (final var name : names.keySet()) {
+          stream.writeInt(end);
+          end += name.value.length();
+        }
+        stream.writeInt(end);
+        for (final var name : names.keySet()) stream.writeBytes(name.value);
+
+        stream.writeInt(sorted.size());
+        for (var i = 0; i < sorted.size(); i++) {
+          stream.writeInt(names.get(sorted.get(i)));
+          stream.writeInt(offsets[i]);
+        }
+        body.writeTo(stream);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Copies the bytes of an encoded package, which end where the next package
+   * starts.
+   *
+   * @param  name Name of the package, which must be in the snapshot.
+   * @return      Encoded package.
+   */
+  private byte[] encoded(final PhysicalName name) {
+    final int start = packages.get(name);
+    var       end   = bytes.limit();
+    for (final var offset : packages.values())
+      if (offset > start && offset < end) end = offset;
+    final var encoded = new byte[end - start];
+    bytes.get(start, encoded);
+    return encoded;
+  }
+
+  /**
+   * Encodes a package.
+   *
+   * @param  output      Stream the package is written to.
+   * @param  names       Indices of the interned names.
+   * @param  parent      Path to the directory that contains the package.
+   * @param  encoded     Encoded package.
+   * @throws IOException If a source or a module could not be accessed.
+   */
+  private static void encode(final DataOutputStream output,
+    final Map<PhysicalName, Integer> names, final Path parent,
+    final Package<Tree> encoded) throws IOException {
+    if (encoded instanceof Package.File<Tree> file) {
+      output.writeInt(FILE_PACKAGE);
+      encode(output, names, file.contents());
+    } else if (encoded instanceof Package.Directory<Tree> directory) {
+      output.writeInt(DIRECTORY_PACKAGE);
+      encode(output, names, parent, directory.contents());
+    }
+  }
+
+  /**
+   * Encodes a module with its sources and submodules.
+   *
+   * @param  output      Stream the module is written to.
+   * @param  names       Indices of the interned names.
+   * @param  parent      Path to the directory that contains the module.
+   * @param  encoded     Encoded module.
+   * @throws IOException If a source or a module could not be accessed.
+   */
+  private static void encode(final DataOutputStream output,
+    final Map<PhysicalName, Integer> names, final Path parent,
+    final Module<Tree> encoded) throws IOException {
+    final var path = parent.resolve(encoded.name().value);
+    output.writeInt(intern(names, encoded.name()));
+    output.writeLong(modified(path));
+
+    final var sources = new ArrayList<>(encoded.sources().values());
+    sources.sort(Comparator.comparing(source -> source.name().value));
+    output.writeInt(sources.size());
+    for (final var source : sources) encode(output, names, source);
+
+    final var submodules = new ArrayList<>(encoded.submodules().values());
+    submodules.sort(Comparator.comparing(submodule -> submodule.name().value));
+    output.writeInt(submodules.size());
+    for (final var submodule : submodules)
+      encode(output, names, path, submodule);
+  }
+
+  /**
+   * Encodes a source with its tokens and tree.
+   *
+   * @param  output      Stream the source is written to.
+   * @param  names       Indices of the interned names.
+   * @param  encoded     Encoded source.
+   * @throws IOException If the stream could not be written.
+   */
+  private static void encode(final DataOutputStream output,
+    final Map<PhysicalName, Integer> names, final Source<Tree> encoded)
+    throws IOException {
+    // Describe the bytes that were lexed instead of the current file, which
+    // might have changed after it was read.
+    final var tree     = encoded.model();
+    final var tokens   = tree.tokens;
+    final var contents = tokens.contents;
+    output.writeInt(intern(names, encoded.name()));
+    output.writeLong(contents.size());
+    output.writeLong(contents.modified == null ? -1
+      : micros(contents.modified));
+    output.write(hash(contents));
+
+    output.writeInt(tokens.count());
+    for (var i = 0; i < tokens.count(); i++) output.writeInt(tokens.kind(i));
+    for (var i = 0; i < tokens.count(); i++) output.writeInt(tokens.start(i));
+    for (var i = 0; i < tokens.count(); i++) output.writeInt(tokens.length(i));
+
+    output.writeInt(tree.count());
+    for (var i = 0; i < tree.count(); i++) output.writeInt(tree.kind(i));
+    for (var i = 0; i < tree.count(); i++) output.writeInt(tree.reference(i));
+    for (var i = 0; i < tree.count(); i++) output.writeInt(tree.end(i) - i);
+  }
+
+  /**
+   * Adds a name to the name table if it is not already there.
+   *
+   * @param  names Indices of the interned names.
+   * @param  name  Interned name.
+   * @return       Index of the name.
+   */
+  private static int intern(final Map<PhysicalName, Integer> names,
+    final PhysicalName name) {
+    final var index = names.get(name);
+    if (index != null) return index;
+    names.put(name, names.size());
+    return names.size() - 1;
+  }
+
+  /**
+   * Reads a count, and checks whether there are enough bytes left for it.
+   *
+   * @param  buffer Buffer whose position is at the count.
+   * @param  size   Minimum number of bytes each counted element takes.
+   * @return        Read count.
+   */
+  private static int count(final ByteBuffer buffer, final int size) {
+    final var count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / size)
+      throw new IllegalArgumentException("Corrupt count!");
+    return count;
+  }
+
+  /**
+   * Copies integers from a buffer, and advances the buffer past them.
+   *
+   * @param  buffer Buffer whose position is at the integers.
+   * @param  count  Number of the copied integers.
+   * @return        Copied integers.
+   */
+  private static int[] ints(final ByteBuffer buffer, final int count) {
+    if (count > buffer.remaining() / Integer.BYTES)
+      throw new IllegalArgumentException("Corrupt array!");
+    final var ints = new int[count];
+    buffer.asIntBuffer().get(ints);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return ints;
+  }
+
+  /**
+   * @param  contents Contents of a source.
+   * @return          Hash of the contents.
+   */
+  private static byte[] hash(final Contents contents) {
+    try {
+      final var digest = MessageDigest.getInstance("SHA-256");
+      digest.update(contents.slice(0, contents.size()));
+      return digest.digest();
+    } catch (NoSuchAlgorithmException exception) {
+      // All Java platforms are required to implement SHA-256.
+      throw new RuntimeException(exception);
+    }
+  }
+
+  /**
+   * @param  path Path to a directory.
+   * @return      Modification time of the directory in microseconds since the
+   *                epoch, or -1 if it could not be accessed.
+   */
+  private static long modified(final Path path) {
+    try {
+      return micros(Files.getLastModifiedTime(path));
+    } catch (IOException exception) {
+      return -1;
+    }
+  }
+
+  /**
+   * @param  time Time of a file.
+   * @return      Time in microseconds since the epoch.
+   */
+  private static long micros(final FileTime time) {
+    return time.to(TimeUnit.MICROSECONDS);
+  }
+
+  /**
+   * Runs all the unit tests for {@link Snapshot}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    final var files = Map.of("A.tr", "a; b { c; }", "B/C.tr", "import A;",
+      "B/D/E.tr", "e(f, [g]);");
+
+    // Test whether the stored packages are restored without parsing them.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      final var first  = stored(directory, parsed);
+      final var second = load(directory, parsed);
+      return parsed.get() == 3 && second.isSuccess()
+        && !second.value().changed()
+        && isSame(first.value().workspace(), second.value().workspace());
+    }));
+
+    // Test whether only the package of a changed source is parsed again.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      final var expected = write(directory, "A.tr", "a;");
+      final var restored = load(directory, parsed);
+      return parsed.get() == 1 && restored.isSuccess()
+        && restored.value().changed() && isSame(expected,
+          restored.value().workspace());
+    }));
+
+    // Test whether a touched source that has the same contents is restored.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      try {
+        Files.setLastModifiedTime(directory.resolve("A.tr"),
+          FileTime.from(Instant.now().minus(30, ChronoUnit.MINUTES)));
+      } catch (IOException exception) {
+        return false;
+      }
+      final var restored = load(directory, parsed);
+      return parsed.get() == 0 && restored.isSuccess();
+    }));
+
+    // Test whether a module is loaded again after a source is added to it.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      final var expected = write(directory, "B/F.tr", "f;");
+      final var restored = load(directory, parsed);
+      return parsed.get() == 3 && restored.isSuccess()
+        && isSame(expected, restored.value().workspace());
+    }));
+
+    // Test whether a removed package changes the snapshot.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      try {
+        Files.delete(directory.resolve("A.tr"));
+      } catch (IOException exception) {
+        return false;
+      }
+      final var restored = load(directory, parsed);
+      return parsed.get() == 0 && restored.isSuccess()
+        && restored.value().changed()
+        && restored.value().workspace().packages().size() == 1;
+    }));
+
+    // Test whether only the given packages and their imports are loaded.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "B;", "B.tr", "b;", "C.tr", "A;", "D/E.tr", "B;"),
+      directory -> {
+        final var parsed   = new AtomicInteger();
+        final var restored = load(directory, parsed, "D");
+        return parsed.get() == 2 && restored.isSuccess()
+          && restored.value().workspace().packages().size() == 2
+          && restored.value().listed().size() == 4;
+      }));
+
+    // Test whether the packages that were not loaded stay in the snapshot.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      final var expected = write(directory, "A.tr", "a;");
+      final var partial  = load(directory, parsed, "A");
+      if (partial.isFailure() || parsed.get() != 1
+        || partial.value().workspace().packages().size() != 1)
+        return false;
+      store(directory, partial.value());
+      final var restored = load(directory, parsed);
+      return parsed.get() == 1 && restored.isSuccess()
+        && isSame(expected, restored.value().workspace());
+    }));
+
+    // Test whether a source that is modified after it is read is parsed
+    // again, instead of being restored with the tree of its earlier bytes.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      final var file   = directory.resolve("A.tr");
+      try {
+        final var old = FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS));
+        for (final var path : List.of(directory, file))
+          Files.setLastModifiedTime(path, old);
+        final var loaded = load(directory, parsed, "A");
+        Files.writeString(file, "x; y { z; }");
+        Files.setLastModifiedTime(file,
+          FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        store(directory, loaded.value());
+      } catch (IOException exception) {
+        return false;
+      }
+      final var restored = load(directory, parsed, "A");
+      return parsed.get() == 2 && restored.isSuccess()
+        && restored.value().workspace().packages()
+          .get(PhysicalName.of("A").value()).sources().iterator().next()
+          .model().tokens.text(0).equals("x");
+    }));
+
+    // Test whether the restored packages are given again while they are
+    // fresh.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      final var first  = stored(directory, parsed);
+      final var second = load(directory, parsed);
+      return first.isSuccess() && second.isSuccess()
+        && first.value().workspace().packages().get(
+          PhysicalName.of("B").value()) == second.value().workspace()
+            .packages().get(PhysicalName.of("B").value());
+    }));
+
+    // Test whether a corrupt snapshot is ignored.
+    tester.run(() -> Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      stored(directory, parsed);
+      parsed.set(0);
+      try {
+        final var file  = directory.resolve(FILE);
+        final var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+      } catch (IOException exception) {
+        return false;
+      }
+      final var restored = load(directory, parsed);
+      return restored.isSuccess() && parsed.get() > 0;
+    }));
+  }
+
+  /**
+   * Loads a workspace from its sources after making their modification times
+   * old, and stores its snapshot.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  parsed    Number of the parsed sources, which is incremented.
+   * @return           Loaded workspace, or error message.
+   */
+  private static Result<Restored, String> stored(final Path directory,
+    final AtomicInteger parsed) {
+    // Files that are modified right before loading are not trusted.
+    final var old = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+    try (var stream = Files.walk(directory)) {
+      for (final var path : stream.toList())
+        Files.setLastModifiedTime(path, old);
+    } catch (IOException exception) {
+      return Result.failure(exception.getLocalizedMessage());
+    }
+    final var loaded = load(directory, parsed);
+    if (loaded.isSuccess()) store(directory, loaded.value());
+    return loaded;
+  }
+
+  /**
+   * Loads a workspace, where the parsed sources are counted. A source imports
+   * the package that is named by its first token, if there is one.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  parsed    Number of the parsed sources, which is incremented.
+   * @param  roots     Names of the needed packages.
+   * @return           Loaded workspace, or error message.
+   */
+  private static Result<Restored, String> load(final Path directory,
+    final AtomicInteger parsed, final String... roots) {
+    final var names = new ArrayList<PhysicalName>();
+    for (final var root : roots) names.add(PhysicalName.of(root).value());
+    return load(ForkJoinPool.commonPool(), directory, names,
+      tree -> tree.tokens.count() == 0 ? Result.success(List.of())
+        : PhysicalName.of(tree.tokens.text(0)).map(List::of),
+      contents -> {
+        parsed.incrementAndGet();
+        return Lexer.lex(contents).flatMap(Parser::parse);
+      });
+  }
+
+  /**
+   * Writes a source, and loads the workspace from its sources.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  file      Relative path to the written source.
+   * @param  contents  Written contents.
+   * @return           Loaded workspace, or null if it could not be loaded.
+   */
+  private static Workspace<Tree> write(final Path directory, final String file,
+    final String contents) {
+    try {
+      Files.writeString(directory.resolve(file), contents);
+    } catch (IOException exception) {
+      return null;
+    }
+    final var loaded = Loader.load(ForkJoinPool.commonPool(), directory,
+      loadedContents -> Lexer.lex(loadedContents).flatMap(Parser::parse));
+    return loaded.isSuccess() ? loaded.value() : null;
+  }
+
+  /**
+   * @param  expected Workspace that is loaded from its sources.
+   * @param  actual   Compared workspace.
+   * @return          Whether the workspaces have the same sources with the
+   *                    same tokens and trees.
+   */
+  private static boolean isSame(final Workspace<Tree> expected,
+    final Workspace<Tree> actual) {
+    if (expected == null
+      || !expected.packages().keySet().equals(actual.packages().keySet()))
+      return false;
+    for (final var entry : expected.packages().entrySet()) {
+      final var expectedSources = entry.getValue().sources();
+      final var actualSources   =
+        actual.packages().get(entry.getKey()).sources();
+      if (expectedSources.size() != actualSources.size()) return false;
+      for (var i = 0; i < expectedSources.size(); i++)
+        if (!isSame(expectedSources.get(i), actualSources.get(i)))
+          return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param  expected Source that is loaded from its file.
+   * @param  actual   Compared source.
+   * @return          Whether the sources have the same tokens and trees.
+   */
+  private static boolean isSame(final Source<Tree> expected,
+    final Source<Tree> actual) {
+    final var expectedTree = expected.model();
+    final var actualTree   = actual.model();
+    if (expected.name() != actual.name()
+      || !expected.path().equals(actual.path())
+      || expectedTree.count() != actualTree.count()
+      || expectedTree.tokens.count() != actualTree.tokens.count())
+      return false;
+    for (var i = 0; i < expectedTree.count(); i++)
+      if (expectedTree.kind(i) != actualTree.kind(i)
+        || expectedTree.reference(i) != actualTree.reference(i)
+        || expectedTree.end(i) != actualTree.end(i))
+        return false;
+    for (var i = 0; i < expectedTree.tokens.count(); i++)
+      if (expectedTree.tokens.kind(i) != actualTree.tokens.kind(i)
+        || expectedTree.tokens.start(i) != actualTree.tokens.start(i)
+        || expectedTree.tokens.length(i) != actualTree.tokens.length(i))
+        return false;
+    return true;
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Snapshot}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark restoring a workspace with 100 module packages that each have
+    // 10 sources of about ten kilobytes.
+    final var files = new HashMap<String, String>();
+    for (var i = 0; i < 100; i++)
+      for (var j = 0; j < 10; j++) files.put("P%d/S%d.tr".formatted(i, j),
+        "Name = call(Argument, [1234]) + \"text\"; { Block; }\n".repeat(200));
+    Tester.withFiles(files, directory -> {
+      final var parsed = new AtomicInteger();
+      if (stored(directory, parsed).isFailure()) return false;
+      bencher.run("Snapshot.load 100 packages with 10 sources",
+        () -> load(directory, parsed));
+      return true;
+    });
+  }
+}
@@ -0,0 +1,205 @@
+package rainfall.syntax;
+
+import java.util.Arrays;
+
+import rainfall.workspace.Contents;
+
+/**
+ * Tokens of a source. Stored as parallel arrays of their kinds, starts and
+ * lengths instead of an object for each token; thus, a token is identified by
+ * its index.
+ *
+ * @author calestialgem
+ */
+public final class Tokens {
+  /**
+   * Kind of a word that starts with a letter or an underscore, and continues
+   * with letters, decimal digits and underscores.
+   */
+  public static final int IDENTIFIER = 0;
+
+  /**
+   * Kind of a word that starts with a decimal digit.
+   */
+  public static final int NUMBER = 1;
+
+  /**
+   * Kind of a text between quotation marks.
+   */
+  public static final int STRING = 2;
+
+  /**
+   * Kind of a sequence of operator characters.
+   */
+  public static final int OPERATOR = 3;
+
+  /**
+   * Kind of an opening parenthesis.
+   */
+  public static final int OPENING_PARENTHESIS = 4;
+
+  /**
+   * Kind of a closing parenthesis.
+   */
+  public static final int CLOSING_PARENTHESIS = 5;
+
+  /**
+   * Kind of an opening brace.
+   */
+  public static final int OPENING_BRACE = 6;
+
+  /**
+   * Kind of a closing brace.
+   */
+  public static final int CLOSING_BRACE = 7;
+
+  /**
+   * Kind of an opening bracket.
+   */
+  public static final int OPENING_BRACKET = 8;
+
+  /**
+   * Kind of a closing bracket.
+   */
+  public static final int CLOSING_BRACKET = 9;
+
+  /**
+   * Kind of a semicolon.
+   */
+  public static final int SEMICOLON = 10;
+
+  /**
+   * Kind of a comma.
+   */
+  public static final int COMMA = 11;
+
+  /**
+   * Kind of a dot.
+   */
+  public static final int DOT = 12;
+
+  /**
+   * Contents of the source the tokens are in.
+   */
+  public final Contents contents;
+
+  /**
+   * Kinds of the tokens.
+   */
+  private int[] kinds;
+
+  /**
+   * Indices of the first bytes of the tokens in the contents.
+   */
+  private int[] starts;
+
+  /**
+   * Number of bytes in the tokens.
+   */
+  private int[] lengths;
+
+  /**
+   * Number of tokens.
+   */
+  private int count;
+
+  /**
+   * Constructs empty tokens.
+   *
+   * @param contents Contents of the source the tokens are in.
+   * @param capacity Number of tokens that can be added before growing.
+   */
+  Tokens(final Contents contents, final int capacity) {
+    this.contents = contents;
+    kinds         = new int[capacity];
+    starts        = new int[capacity];
+    lengths       = new int[capacity];
+    count         = 0;
+  }
+
+  /**
+   * Constructs tokens from filled arrays, like the ones that are restored from
+   * a snapshot. The arrays are not copied.
+   *
+   * @param contents Contents of the source the tokens are in.
+   * @param kinds    Kinds of the tokens.
+   * @param starts   Indices of the first bytes of the tokens in the contents.
+   * @param lengths  Number of bytes in the tokens.
+   */
+  Tokens(final Contents contents, final int[] kinds, final int[] starts,
+    final int[] lengths) {
+    this.contents = contents;
+    this.kinds    = kinds;
+    this.starts   = starts;
+    this.lengths  = lengths;
+    count         = kinds.length;
+  }
+
+  /**
+   * Adds a token to the end.
+   *
+   * @param kind   Kind of the added token.
+   * @param start  Index of the first byte of the added token in the contents.
+   * @param length Number of bytes in the added token.
+   */
+  void add(final int kind, final int start, final int length) {
+    // Grow all the arrays together by doubling.
+    if (count == kinds.length) {
+      final var capacity = Math.max(kinds.length * 2, 16);
+      kinds   = Arrays.copyOf(kinds, capacity);
+      starts  = Arrays.copyOf(starts, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+    }
+    kinds[count]   = kind;
+    starts[count]  = start;
+    lengths[count] = length;
+    count++;
+  }
+
+  /**
+   * @return Number of tokens.
+   */
+  public int count() { return count; }
+
+  /**
+   * @param  index Index of the token.
+   * @return       Kind of the token.
+   */
+  public int kind(final int index) { return kinds[index]; }
+
+  /**
+   * @param  index Index of the token.
+   * @return       Index of the first byte of the token in the contents.
+   */
+  public int start(final int index) { return starts[index]; }
+
+  /**
+   * @param  index Index of the token.
+   * @return       Number of bytes in the token.
+   */
+  public int length(final int index) { return lengths[index]; }
+
+  /**
+   * Decodes the text of a token. Should only be used when a string is needed.
+   *
+   * @param  index Index of the token.
+   * @return       Text of the token.
+   */
+  public String text(final int index) {
+    return contents.text(starts[index], lengths[index]);
+  }
+
+  /**
+   * Checks whether a token is the given text without decoding it.
+   *
+   * @param  index Index of the token.
+   * @param  text  Compared text, which must be ASCII.
+   * @return       Whether the token's bytes are the same as the text's.
+   */
+  public boolean is(final int index, final String text) {
+    if (lengths[index] != text.length()) return false;
+    for (var i = 0; i < lengths[index]; i++)
+      if (contents.at(starts[index] + i) != text.charAt(i)) return false;
+    return true;
+  }
+}
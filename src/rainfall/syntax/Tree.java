@@ -0,0 +1,170 @@
+package rainfall.syntax;
+
+import java.util.Arrays;
+
+/**
+ * Syntax tree of a source. Nodes are stored in parallel arrays in pre-order,
+ * where a node is directly followed by its children; thus, a node is
+ * identified by its index and its subtree is the range of nodes that starts at
+ * it. All the nodes of a source are held by its tree, which is freed as a
+ * whole.
+ *
+ * <p>
+ * Children of a node are iterated like:
+ * {@code for (var child = tree.first(node); child < tree.end(node);
+ * child = tree.end(child))}.
+ *
+ * @author calestialgem
+ */
+public final class Tree {
+  /**
+   * Kind of the root node, whose children are statements.
+   */
+  public static final int SOURCE = 0;
+
+  /**
+   * Kind of a statement, which is a sequence of tokens and groups that ends
+   * with a semicolon or a block. Refers to its first token.
+   */
+  public static final int STATEMENT = 1;
+
+  /**
+   * Kind of statements between braces. Refers to the opening brace.
+   */
+  public static final int BLOCK = 2;
+
+  /**
+   * Kind of tokens, groups and blocks between parentheses or brackets. Refers
+   * to the opening parenthesis or bracket.
+   */
+  public static final int GROUP = 3;
+
+  /**
+   * Kind of a leaf that is a token. Refers to the token.
+   */
+  public static final int TOKEN = 4;
+
+  /**
+   * Tokens the nodes refer to.
+   */
+  public final Tokens tokens;
+
+  /**
+   * Kinds of the nodes.
+   */
+  private int[] kinds;
+
+  /**
+   * Indices of the tokens the nodes refer to.
+   */
+  private int[] references;
+
+  /**
+   * Number of nodes in the subtrees of the nodes, including themselves.
+   */
+  private int[] sizes;
+
+  /**
+   * Number of nodes.
+   */
+  private int count;
+
+  /**
+   * Constructs an empty tree.
+   *
+   * @param tokens   Tokens the nodes refer to.
+   * @param capacity Number of nodes that can be added before growing.
+   */
+  Tree(final Tokens tokens, final int capacity) {
+    this.tokens = tokens;
+    kinds       = new int[capacity];
+    references  = new int[capacity];
+    sizes       = new int[capacity];
+    count       = 0;
+  }
+
+  /**
+   * Constructs a tree from filled arrays, like the ones that are restored from
+   * a snapshot. The arrays are not copied.
+   *
+   * @param tokens     Tokens the nodes refer to.
+   * @param kinds      Kinds of the nodes.
+   * @param references Indices of the tokens the nodes refer to.
+   * @param sizes      Number of nodes in the subtrees of the nodes.
+   */
+  Tree(final Tokens tokens, final int[] kinds, final int[] references,
+    final int[] sizes) {
+    this.tokens     = tokens;
+    this.kinds      = kinds;
+    this.references = references;
+    this.sizes      = sizes;
+    count           = kinds.length;
+  }
+
+  /**
+   * Adds a node to the end. Nodes added afterwards are its children until it
+   * is closed.
+   *
+   * @param  kind      Kind of the added node.
+   * @param  reference Index of the token the added node refers to.
+   * @return           Index of the added node.
+   */
+  int open(final int kind, final int reference) {
+    // Grow all the arrays together by doubling.
+    if (count == kinds.length) {
+      final var capacity = Math.max(kinds.length * 2, 16);
+      kinds      = Arrays.copyOf(kinds, capacity);
+      references = Arrays.copyOf(references, capacity);
+      sizes      = Arrays.copyOf(sizes, capacity);
+    }
+    kinds[count]      = kind;
+    references[count] = reference;
+    sizes[count]      = 1;
+    return count++;
+  }
+
+  /**
+   * Ends the subtree of a node, which contains all the nodes added after it.
+   *
+   * @param node Index of the closed node.
+   */
+  void close(final int node) { sizes[node] = count - node; }
+
+  /**
+   * Adds a leaf that refers to a token.
+   *
+   * @param token Index of the token.
+   */
+  void leaf(final int token) { open(TOKEN, token); }
+
+  /**
+   * @return Number of nodes.
+   */
+  public int count() { return count; }
+
+  /**
+   * @param  node Index of the node.
+   * @return      Kind of the node.
+   */
+  public int kind(final int node) { return kinds[node]; }
+
+  /**
+   * @param  node Index of the node.
+   * @return      Index of the token the node refers to.
+   */
+  public int reference(final int node) { return references[node]; }
+
+  /**
+   * @param  node Index of the node.
+   * @return      Index of the first child of the node, which is the same as
+   *                the end of the node if it does not have children.
+   */
+  public int first(final int node) { return node + 1; }
+
+  /**
+   * @param  node Index of the node.
+   * @return      Index after the last node in the subtree of the node, which
+   *                is the next sibling of the node if there is one.
+   */
+  public int end(final int node) { return node + sizes[node]; }
+}
@@ -0,0 +1,154 @@
+package rainfall.utility;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs and reports benchmarks. Each benchmark is warmed up first for a number
+ * of iterations such that the virtual machine compiles it, then it is measured
+ * for a number of iterations of a fixed time.
+ *
+ * @author calestialgem
+ */
+public class Bencher {
+  /**
+   * Number of the iterations run before measuring a benchmark.
+   */
+  private static final int WARM_UP_ITERATIONS = 5;
+
+  /**
+   * Number of the measured iterations of a benchmark.
+   */
+  private static final int MEASURE_ITERATIONS = 5;
+
+  /**
+   * Time spent in an iteration, in milliseconds.
+   */
+  private static final double ITERATION_DURATION = 200;
+
+  /**
+   * Time a batch of runs should at least take, in milliseconds. Reading the
+   * time for every run would dominate the fast benchmarks.
+   */
+  private static final double BATCH_DURATION = 1;
+
+  /**
+   * Object that is compared to the results of a benchmark, which is never the
+   * same as any of them. Read on every run such that the virtual machine cannot
+   * eliminate the benchmarked code as dead code, without the cost of writing
+   * to a volatile field.
+   */
+  private volatile Object sink = new Object();
+
+  /**
+   * Number of the results that were the same as the {@link #sink}, which is
+   * never incremented.
+   */
+  private long sunk;
+
+  /**
+   * Constructs a benchmark runner.
+   */
+  public Bencher() {}
+
+  /**
+   * Runs the given benchmark and reports the time it takes.
+   *
+   * @param name      Name that identifies the benchmark in the report.
+   * @param benchmark Run benchmark, whose result is consumed.
+   */
+  public void run(final String name, final Supplier<?> benchmark) {
+    run(name, 0, benchmark);
+  }
+
+  /**
+   * Runs the given benchmark and reports the time it takes, and its
+   * throughput.
+   *
+   * @param name      Name that identifies the benchmark in the report.
+   * @param bytes     Number of bytes processed by a run of the benchmark.
+   * @param benchmark Run benchmark, whose result is consumed.
+   */
+  public void run(final String name, final long bytes,
+    final Supplier<?> benchmark) {
+    // Warm up, while finding a batch size that takes long enough.
+    var batch = 1L;
+    for (var i = 0; i < WARM_UP_ITERATIONS; i++) {
+      final var iterationStartTime = currentMilliseconds();
+      while (elapsedMilliseconds(iterationStartTime) < ITERATION_DURATION) {
+        final var batchStartTime = currentMilliseconds();
+        runBatch(batch, benchmark);
+        if (elapsedMilliseconds(batchStartTime) < BATCH_DURATION) batch *= 2;
+      }
+    }
+
+    // Measure the iterations, and keep the time per run of each.
+    final var milli       = 1e3;
+    final var nano        = 1e9;
+    final var mega        = 1e6;
+    final var nanoseconds = new double[MEASURE_ITERATIONS];
+    for (var i = 0; i < MEASURE_ITERATIONS; i++) {
+      var       runs               = 0L;
+      final var iterationStartTime = currentMilliseconds();
+      while (elapsedMilliseconds(iterationStartTime) < ITERATION_DURATION) {
+        runBatch(batch, benchmark);
+        runs += batch;
+      }
+      nanoseconds[i] =
+        elapsedMilliseconds(iterationStartTime) / runs / milli * nano;
+    }
+
+    // Report the average time with its range, and the throughput.
+    var average = 0.0;
+    var minimum = Double.POSITIVE_INFINITY;
+    var maximum = 0.0;
+    for (final var nanosecond : nanoseconds) {
+      average += nanosecond / MEASURE_ITERATIONS;
+      minimum  = Math.min(minimum, nanosecond);
+      maximum  = Math.max(maximum, nanosecond);
+    }
+    System.out.printf("%s: %.3f ns/op [%.3f, %.3f]", name, average, minimum,
+      maximum);
+    if (bytes > 0)
+      System.out.printf(" (%.3f MB/s)", bytes / mega / (average / nano));
+    System.out.println();
+  }
+
+  /**
+   * Runs the given benchmark for the given times.
+   *
+   * @param batch     Number of runs.
+   * @param benchmark Run benchmark, whose result is consumed.
+   */
+  private void runBatch(final long batch, final Supplier<?> benchmark) {
+    for (var i = 0L; i < batch; i++) consume(benchmark.get());
+  }
+
+  /**
+   * Consumes a result of a benchmark such that it must be computed.
+   *
+   * @param result Consumed result.
+   */
+  private void consume(final Object result) {
+    if (result == sink) sunk++;
+  }
+
+  /**
+   * @return Current relative time in milliseconds.
+   */
+  private static double currentMilliseconds() {
+    final var milli = 1e3;
+    final var nano  = 1e9;
+    return System.nanoTime() / nano * milli;
+  }
+
+  /**
+   * Measures the elapsed time.
+   *
+   * @param  startTime Relative time at the start of the measurement.
+   * @return           Elapsed time from the start up to now.
+   */
+  private static double elapsedMilliseconds(final double startTime) {
+    final var endTime = currentMilliseconds();
+    return endTime - startTime;
+  }
+}
@@ -47,6 +47,13 @@ public sealed interface Box<Held> {
    * @author        calestialgem
    */
   record Empty<Held>() implements Box<Held> {
+    /**
+     * Empty box that is shared by all the empty boxes that are created. An
+     * empty box does not hold anything of the type it is parameterized with;
+     * thus, it can be shared by all the types.
+     */
+    private static final Empty<?> INSTANCE = new Empty<>();
+
     @Override public boolean isFull() { return false; }
     @Override public boolean isEmpty() { return true; }
     @Override public Held get() { throw new RuntimeException("Box is empty!"); }
@@ -77,13 +84,15 @@ public sealed interface Box<Held> {
   }
 
   /**
-   * Creates an empty box.
+   * Gives the shared empty box.
    *
    * @param  <Held> Type of the value that the box would have contained if there
    *                  were a value.
-   * @return        New empty box.
+   * @return        Empty box.
    */
-  static <Held> Box<Held> empty() { return new Empty<>(); }
+  @SuppressWarnings("unchecked") static <Held> Box<Held> empty() {
+    return (Box<Held>) Empty.INSTANCE;
+  }
 
   /**
    * @return Whether there is a value.
@@ -115,5 +124,8 @@ public sealed interface Box<Held> {
 
     // Test whether a created empty box is actually empty.
     tester.run(() -> empty().isEmpty());
+
+    // Test whether created empty boxes are shared.
+    tester.run(() -> empty() == empty());
   }
 }
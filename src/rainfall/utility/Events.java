@@ -0,0 +1,188 @@
+package rainfall.utility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Flight recorder events of the compiler, which are recorded only when a
+ * recording is started; for example, with the
+ * {@code -XX:StartFlightRecording} option of the virtual machine. Unlike the
+ * {@link Metrics}, the events can be recorded without asking the compiler
+ * for them, and they show up with the threads and the garbage collections of
+ * the virtual machine in the same recording.
+ *
+ * <p>
+ * An event is used like: {@code final var event = new Events.Lex();
+ * event.begin(); ... event.finish(path, size);}.
+ *
+ * @author calestialgem
+ */
+public final class Events {
+  /**
+   * Work on a source, a package or the whole workspace.
+   *
+   * @author calestialgem
+   */
+  @Category("Rainfall")
+  @StackTrace(false)
+  public abstract static class Work extends Event {
+    /**
+     * Name of the worked package or workspace, or path to the worked source.
+     * Not private, as the flight recorder does not record the private fields
+     * of the base classes.
+     */
+    @Label("Name")
+    String name;
+
+    /**
+     * Number of bytes in the worked sources, or in the generated code.
+     */
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /**
+     * Constructs a work.
+     */
+    Work() {}
+
+    /**
+     * Ends the work, and commits it if it is recorded. The name is not
+     * formatted if the event is not recorded.
+     *
+     * @param name Name of the worked thing.
+     * @param size Number of bytes worked on.
+     */
+    public void finish(final Object name, final long size) {
+      end();
+      if (!shouldCommit()) return;
+      this.name = String.valueOf(name);
+      this.size = size;
+      commit();
+    }
+  }
+
+  /**
+   * Loading of the packages in a workspace.
+   *
+   * @author calestialgem
+   */
+  @Name("rainfall.Scan")
+  @Label("Scan")
+  @Description("Loading of the packages in a workspace directory.")
+  public static final class Scan extends Work {
+    /**
+     * Constructs a scan event.
+     */
+    public Scan() {}
+  }
+
+  /**
+   * Lexing of a source.
+   *
+   * @author calestialgem
+   */
+  @Name("rainfall.Lex")
+  @Label("Lex")
+  @Description("Lexing of a source.")
+  public static final class Lex extends Work {
+    /**
+     * Constructs a lex event.
+     */
+    public Lex() {}
+  }
+
+  /**
+   * Parsing of a source.
+   *
+   * @author calestialgem
+   */
+  @Name("rainfall.Parse")
+  @Label("Parse")
+  @Description("Parsing of a source.")
+  public static final class Parse extends Work {
+    /**
+     * Constructs a parse event.
+     */
+    public Parse() {}
+  }
+
+  /**
+   * Checking of a package.
+   *
+   * @author calestialgem
+   */
+  @Name("rainfall.Check")
+  @Label("Check")
+  @Description("Checking of a package.")
+  public static final class Check extends Work {
+    /**
+     * Constructs a check event.
+     */
+    public Check() {}
+  }
+
+  /**
+   * Generation of the C code of a package.
+   *
+   * @author calestialgem
+   */
+  @Name("rainfall.Generate")
+  @Label("Generate")
+  @Description("Generation of the C code of a package.")
+  public static final class Generate extends Work {
+    /**
+     * Constructs a generate event.
+     */
+    public Generate() {}
+  }
+
+  /**
+   * Constructs the events, which is not used as the class only has static
+   * members.
+   */
+  private Events() {}
+
+  /**
+   * Runs all the unit tests for {@link Events}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a finished event is recorded with its name and size.
+    tester.run(() -> {
+      try (var recording = new Recording()) {
+        recording.enable(Lex.class).withoutThreshold();
+        recording.start();
+        final var event = new Lex();
+        event.begin();
+        event.finish("A.tr", 2);
+        recording.stop();
+        final var file = Files.createTempFile("rainfall", ".jfr");
+        try {
+          recording.dump(file);
+          for (final var recorded : RecordingFile.readAllEvents(file))
+            if (recorded.getEventType().getName().equals("rainfall.Lex")
+              && recorded.getString("name").equals("A.tr")
+              && recorded.getLong("size") == 2)
+              return true;
+          return false;
+        } finally {
+          Files.delete(file);
+        }
+      } catch (IOException exception) {
+        return false;
+      }
+    });
+  }
+}
@@ -0,0 +1,374 @@
+package rainfall.utility;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measurements of the work done by the compiler, which are collected only
+ * when they are enabled. Work is measured as spans, which record the time and
+ * the bytes allocated by the thread between their start and end; and the
+ * amount of work is counted, like the number of lexed tokens.
+ *
+ * <p>
+ * A span whose work is done by the tasks in other threads, like loading the
+ * whole workspace, is a wrapping span. Only the time of a wrapping span is
+ * recorded, as the bytes allocated by its thread are not the ones allocated by
+ * its work. Wrapping spans are summed separately from the other phases; thus,
+ * the time of the nested spans is not counted twice in the totals.
+ *
+ * <p>
+ * Measurements are collected by the whole process, as the phases of the
+ * compiler run in the shared fork-join pool. When they are disabled, the
+ * measured work is directly done; thus, the cost of measuring is a single
+ * volatile read.
+ *
+ * @author calestialgem
+ */
+public final class Metrics {
+  /**
+   * Measurements that are being collected, or null if they are disabled.
+   */
+  private static volatile Metrics active;
+
+  /**
+   * Finished spans.
+   */
+  private final ConcurrentLinkedQueue<Event> events;
+
+  /**
+   * Amounts of work mapped to their names.
+   */
+  private final ConcurrentHashMap<String, LongAdder> counters;
+
+  /**
+   * Time of enabling the measurements in nanoseconds, which is the origin of
+   * the times of the spans.
+   */
+  private final long origin;
+
+  /**
+   * Part of the platform that measures the bytes allocated by the threads.
+   */
+  private final com.sun.management.ThreadMXBean threads;
+
+  /**
+   * Finished span.
+   *
+   * @param  phase     Name of the phase the work is a part of.
+   * @param  subject   Description of the thing that is worked on.
+   * @param  thread    Identifier of the thread that did the work.
+   * @param  start     Time of starting the work in nanoseconds after enabling
+   *                     the measurements.
+   * @param  duration  Nanoseconds it took to do the work.
+   * @param  allocated Bytes that are allocated by the thread while doing the
+   *                     work, or -1 if it could not be measured or the span
+   *                     is wrapping.
+   * @param  wrapping  Whether the work is done by the tasks in other threads.
+   * @author           calestialgem
+   */
+  private record Event(String phase, String subject, long thread, long start,
+    long duration, long allocated, boolean wrapping) {}
+
+  /**
+   * Starts collecting the measurements, which forgets any measurements that
+   * are collected before.
+   */
+  public static void enable() { active = new Metrics(); }
+
+  /**
+   * Stops collecting the measurements, which forgets the collected ones.
+   */
+  public static void disable() { active = null; }
+
+  /**
+   * Does a work, and measures it as a span if the measurements are enabled.
+   *
+   * @param  <Measured> Type of the result of the work.
+   * @param  phase      Name of the phase the work is a part of.
+   * @param  subject    Description of the thing that is worked on.
+   * @param  work       Measured work.
+   * @return            Result of the work.
+   */
+  public static <Measured> Measured measure(final String phase,
+    final Object subject, final Supplier<Measured> work) {
+    final var metrics = active;
+    if (metrics == null) return work.get();
+    return metrics.span(phase, subject, work, false);
+  }
+
+  /**
+   * Does a work that waits for the tasks in other threads, and measures it as
+   * a wrapping span if the measurements are enabled.
+   *
+   * @param  <Measured> Type of the result of the work.
+   * @param  phase      Name of the phase the work is a part of.
+   * @param  subject    Description of the thing that is worked on.
+   * @param  work       Measured work.
+   * @return            Result of the work.
+   */
+  public static <Measured> Measured wrap(final String phase,
+    final Object subject, final Supplier<Measured> work) {
+    final var metrics = active;
+    if (metrics == null) return work.get();
+    return metrics.span(phase, subject, work, true);
+  }
+
+  /**
+   * Counts an amount of work.
+   *
+   * @param name   Name of the counted work.
+   * @param amount Counted amount.
+   */
+  public static void count(final String name, final long amount) {
+    final var metrics = active;
+    if (metrics == null) return;
+    metrics.counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+  }
+
+  /**
+   * Writes the collected measurements to a file.
+   *
+   * @param  file Path to the written file.
+   * @return      Success, or error message if the measurements are disabled or
+   *                the file could not be written.
+   */
+  public static Result<Void, String> dump(final Path file) {
+    final var metrics = active;
+    if (metrics == null) return Result.failure("Metrics are not enabled!");
+    try {
+      Files.writeString(file, metrics.json(), StandardCharsets.UTF_8);
+      return Result.success();
+    } catch (IOException exception) {
+      return Result.failure("Could not write the metrics to `%s`! %s"
+        .formatted(file, exception.getLocalizedMessage()));
+    }
+  }
+
+  /**
+   * Constructs empty measurements.
+   */
+  private Metrics() {
+    events   = new ConcurrentLinkedQueue<>();
+    counters = new ConcurrentHashMap<>();
+    origin   = System.nanoTime();
+    final var platform = ManagementFactory.getThreadMXBean();
+    threads = platform instanceof com.sun.management.ThreadMXBean measurer
+      && measurer.isThreadAllocatedMemorySupported()
+      && measurer.isThreadAllocatedMemoryEnabled() ? measurer : null;
+  }
+
+  /**
+   * Does a work, and records the span of it.
+   *
+   * @param  <Measured> Type of the result of the work.
+   * @param  phase      Name of the phase the work is a part of.
+   * @param  subject    Description of the thing that is worked on.
+   * @param  work       Measured work.
+   * @param  wrapping   Whether the work is done by the tasks in other threads.
+   * @return            Result of the work.
+   */
+  private <Measured> Measured span(final String phase, final Object subject,
+    final Supplier<Measured> work, final boolean wrapping) {
+    final var thread    = Thread.currentThread().getId();
+    final var allocated = wrapping ? -1 : allocated();
+    final var start     = System.nanoTime();
+    try {
+      return work.get();
+    } finally {
+      final var end = System.nanoTime();
+      events.add(new Event(phase, String.valueOf(subject), thread,
+        start - origin, end - start,
+        allocated == -1 ? -1 : allocated() - allocated, wrapping));
+    }
+  }
+
+  /**
+   * @return Bytes allocated by the current thread since it started, or -1 if
+   *           it could not be measured.
+   */
+  private long allocated() {
+    if (threads == null) return -1;
+    return threads.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Formats the measurements as a Chrome trace, which can be opened in a trace
+   * viewer like {@code chrome://tracing} or Perfetto. Besides the trace
+   * events, the totals of the phases, the totals of the wrapping spans and the
+   * counters are in the same object, which are ignored by the viewers.
+   *
+   * @return Formatted measurements.
+   */
+  private String json() {
+    final var sorted = new ArrayList<>(events);
+    sorted.sort(Comparator.comparingLong(Event::start));
+
+    // Sum the spans of the phases, and the wrapping spans separately.
+    final var phases   = new TreeMap<String, long[]>();
+    final var wrapping = new TreeMap<String, long[]>();
+    for (final var event : sorted) {
+      final var total = (event.wrapping() ? wrapping : phases)
+        .computeIfAbsent(event.phase(), key -> new long[3]);
+      total[0]++;
+      total[1] += event.duration();
+      if (event.allocated() != -1) total[2] += event.allocated();
+    }
+
+    final var builder = new StringBuilder();
+    builder.append("{\n  \"phases\": {");
+    var first = true;
+    for (final var phase : phases.entrySet()) {
+      builder.append(first ? "\n" : ",\n");
+      first = false;
+      final var total = phase.getValue();
+      builder.append("    ").append(quote(phase.getKey())).append(
+        ": {\"spans\": %d, \"nanoseconds\": %d, \"allocated\": %d}"
+          .formatted(total[0], total[1], total[2]));
+    }
+    builder.append("\n  },\n  \"wrapping\": {");
+    first = true;
+    for (final var phase : wrapping.entrySet()) {
+      builder.append(first ? "\n" : ",\n");
+      first = false;
+      final var total = phase.getValue();
+      builder.append("    ").append(quote(phase.getKey()))
+        .append(": {\"spans\": %d, \"nanoseconds\": %d}".formatted(total[0],
+          total[1]));
+    }
+    builder.append("\n  },\n  \"counters\": {");
+    first = true;
+    for (final var counter : new TreeMap<>(counters).entrySet()) {
+      builder.append(first ? "\n" : ",\n");
+      first = false;
+      builder.append("    ").append(quote(counter.getKey())).append(": ")
+        .append(counter.getValue().sum());
+    }
+    builder.append("\n  },\n  \"displayTimeUnit\": \"ms\",\n");
+    builder.append("  \"traceEvents\": [");
+    first = true;
+    for (final var event : sorted) {
+      builder.append(first ? "\n" : ",\n");
+      first = false;
+      // Trace viewers take the times in microseconds.
+      builder.append("    {\"name\": ").append(quote(event.phase()))
+        .append(", \"cat\": \"rainfall\", \"ph\": \"X\", \"pid\": 1")
+        .append(", \"tid\": ").append(event.thread())
+        .append(", \"ts\": %.3f, \"dur\": %.3f".formatted(event.start() / 1e3,
+          event.duration() / 1e3))
+        .append(", \"args\": {\"subject\": ").append(quote(event.subject()))
+        .append(", \"allocated\": ").append(event.allocated()).append("}}");
+    }
+    builder.append("\n  ]\n}\n");
+    return builder.toString();
+  }
+
+  /**
+   * Formats a string as a JSON string.
+   *
+   * @param  quoted Formatted string.
+   * @return        JSON string.
+   */
+  static String quote(final String quoted) {
+    final var builder = new StringBuilder(quoted.length() + 2);
+    builder.append('"');
+    for (var i = 0; i < quoted.length(); i++) {
+      final var character = quoted.charAt(i);
+      switch (character) {
+      case '"' -> builder.append("\\\"");
+      case '\\' -> builder.append("\\\\");
+      case '\n' -> builder.append("\\n");
+      case '\r' -> builder.append("\\r");
+      case '\t' -> builder.append("\\t");
+      default -> {
+        if (character < 0x20)
+          builder.append("\\u%04x".formatted((int) character));
+        else builder.append(character);
+      }
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  /**
+   * Runs all the unit tests for {@link Metrics}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether nothing is measured when the measurements are disabled.
+    tester.run(() -> {
+      disable();
+      final var measured = measure("phase", "subject", () -> {
+        count("counter", 1);
+        return 1;
+      });
+      return measured == 1 && active == null;
+    });
+
+    // Test whether spans and counters are collected.
+    tester.run(() -> {
+      enable();
+      measure("lex", "A.tr", () -> {
+        count("tokens", 2);
+        count("tokens", 3);
+        return null;
+      });
+      final var json = active.json();
+      disable();
+      return json.contains("\"lex\": {\"spans\": 1,")
+        && json.contains("\"tokens\": 5")
+        && json.contains("\"subject\": \"A.tr\"");
+    });
+
+    // Test whether wrapping spans are not summed with the phases they wrap,
+    // and do not record the allocations.
+    tester.run(() -> {
+      enable();
+      wrap("load", "directory", () -> measure("lex", "A.tr", () -> null));
+      final var json = active.json();
+      disable();
+      final var phases = json.substring(0, json.indexOf("\"wrapping\""));
+      return phases.contains("\"lex\": {\"spans\": 1,")
+        && !phases.contains("\"load\"")
+        && json.contains("\"load\": {\"spans\": 1, \"nanoseconds\": ")
+        && json.contains("\"subject\": \"directory\", \"allocated\": -1");
+    });
+
+    // Test whether enabling forgets the earlier measurements.
+    tester.run(() -> {
+      enable();
+      measure("lex", "A.tr", () -> null);
+      enable();
+      final var empty = active.events.isEmpty();
+      disable();
+      return empty;
+    });
+
+    // Test whether strings are quoted.
+    tester.run(() -> quote("a\"b\\c\nd\u0001")
+      .equals("\"a\\\"b\\\\c\\nd\\u0001\""));
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Metrics}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark the cost of measuring when it is disabled, which is paid by
+    // every build.
+    disable();
+    bencher.run("Metrics.measure disabled",
+      () -> measure("phase", "subject", () -> bencher));
+  }
+}
@@ -1,5 +1,6 @@
 package rainfall.utility;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.BinaryOperator;
@@ -22,6 +23,12 @@ public sealed interface Result<Value, Error> {
    * @author         calestialgem
    */
   record Success<Value, Error>(Value value) implements Result<Value, Error> {
+    /**
+     * Successful result without a value that is shared by all the results
+     * created without a value.
+     */
+    private static final Success<Void, ?> EMPTY = new Success<>(null);
+
     @Override public boolean isSuccess() { return true; }
     @Override public boolean isFailure() { return false; }
 
@@ -65,6 +72,16 @@ public sealed interface Result<Value, Error> {
       throw new RuntimeException("Result is failure!");
     }
 
+    /**
+     * Propagates without creating a new result. A failure does not hold
+     * anything of the value type; thus, it can be used as a failure of any
+     * value type.
+     */
+    @SuppressWarnings("unchecked") @Override
+    public <TargetValue> Result<TargetValue, Error> propagate() {
+      return (Result<TargetValue, Error>) this;
+    }
+
     /**
      * Runs all the unit tests for {@link Failure}.
      *
@@ -97,6 +114,16 @@ public sealed interface Result<Value, Error> {
     return new Success<>(value);
   }
 
+  /**
+   * Gives the shared successful result without a value.
+   *
+   * @param  <Error> Type of the error that would have resulted on failure.
+   * @return         Success without a value.
+   */
+  @SuppressWarnings("unchecked") static <Error> Result<Void, Error> success() {
+    return (Result<Void, Error>) Success.EMPTY;
+  }
+
   /**
    * Creates a failed result.
    *
@@ -110,7 +137,8 @@ public sealed interface Result<Value, Error> {
   }
 
   /**
-   * Combines multiple results to a single one.
+   * Combines multiple results to a single one. Goes over the results once, and
+   * stops collecting the values after the first failure.
    *
    * @param  <CombinedValue> Type that is the result of combining the values.
    * @param  <CombinedError> Type that is the result of combining the errors.
@@ -126,14 +154,17 @@ public sealed interface Result<Value, Error> {
     combine(final Collection<Result<Value, Error>> results,
       final Function<List<Value>, CombinedValue> valueCombiner,
       final Function<List<Error>, CombinedError> errorCombiner) {
-    // List all the errors and combine them if there are any.
-    final var errors =
-      results.stream().filter(Result::isFailure).map(Result::error).toList();
-    if (!errors.isEmpty()) return Result.failure(errorCombiner.apply(errors));
+    // Collect the values until there is an error, then only the errors.
+    final var values = new ArrayList<Value>(results.size());
+    final var errors = new ArrayList<Error>();
+    for (final var result : results) {
+      if (result.isFailure()) errors.add(result.error());
+      else if (errors.isEmpty()) values.add(result.value());
+    }
 
-    // If there are no errors, combine the values.
-    return Result.success(
-      valueCombiner.apply(results.stream().map(Result::value).toList()));
+    // Combine the errors if there are any; otherwise, combine the values.
+    if (!errors.isEmpty()) return Result.failure(errorCombiner.apply(errors));
+    return Result.success(valueCombiner.apply(values));
   }
 
   /**
@@ -162,6 +193,35 @@ public sealed interface Result<Value, Error> {
     return success(mapper.apply(value()));
   }
 
+  /**
+   * Maps the value to another result if it exists.
+   *
+   * @param  <TargetValue> Type of the value that will be resulted on success
+   *                         for the converted result.
+   * @param  mapper        Function that converts the value to a result.
+   * @return               Converted result, or the same error.
+   */
+  default <TargetValue> Result<TargetValue, Error>
+    flatMap(Function<Value, Result<TargetValue, Error>> mapper) {
+    // If there is an error, propagate; otherwise, map the value.
+    if (isFailure()) return propagate();
+    return mapper.apply(value());
+  }
+
+  /**
+   * Converts the value or the error to the same type.
+   *
+   * @param  <Folded>    Type of the converted value or error.
+   * @param  valueMapper Function that converts the value.
+   * @param  errorMapper Function that converts the error.
+   * @return             Converted value, or converted error.
+   */
+  default <Folded> Folded fold(Function<Value, Folded> valueMapper,
+    Function<Error, Folded> errorMapper) {
+    if (isFailure()) return errorMapper.apply(error());
+    return valueMapper.apply(value());
+  }
+
   /**
    * @return Whether the result is successful.
    */
@@ -228,6 +288,24 @@ public sealed interface Result<Value, Error> {
       return combined.isSuccess() && combined.value() == 4;
     });
 
+    // Test whether combination keeps the order of the values.
+    tester.run(() -> {
+      final var results  = List.<Result<Integer, Integer>>of(success(1),
+        success(2), success(3));
+      final var combined = combine(results, Function.identity(),
+        Function.identity());
+      return combined.isSuccess() && combined.value().equals(List.of(1, 2, 3));
+    });
+
+    // Test whether combination keeps all the errors in order.
+    tester.run(() -> {
+      final var results  = List.<Result<Integer, Integer>>of(failure(1),
+        success(2), failure(3));
+      final var combined = combine(results, Function.identity(),
+        Function.identity());
+      return combined.isFailure() && combined.error().equals(List.of(1, 3));
+    });
+
     // Test propagation of resulted errors.
     tester.run(() -> {
       final Result<Integer, Integer> first  = failure(1);
@@ -235,6 +313,39 @@ public sealed interface Result<Value, Error> {
       return second.isFailure() && second.error().equals(first.error());
     });
 
+    // Test whether propagating a failure does not create a new result.
+    tester.run(() -> {
+      final Result<Integer, Integer> first = failure(1);
+      return first.<String>propagate() == (Object) first;
+    });
+
+    // Test whether successful results without values are shared.
+    tester.run(() -> success() == success() && success().isSuccess());
+
+    // Test whether flat mapping a failure just propagates it.
+    tester.run(() -> {
+      final Result<Integer, Integer> first  = failure(1);
+      final Result<String, Integer>  second =
+        first.flatMap(value -> success(String.valueOf(value)));
+      return second.isFailure() && second.error().equals(first.error());
+    });
+
+    // Test whether flat mapping a success results in the mapped result.
+    tester.run(() -> {
+      final Result<Integer, Integer> first  = success(1);
+      final Result<String, Integer>  second =
+        first.flatMap(value -> failure(2));
+      return second.isFailure() && second.error() == 2;
+    });
+
+    // Test whether folding converts the value or the error.
+    tester.run(() -> {
+      final Result<Integer, String> first  = success(1);
+      final Result<Integer, String> second = failure("2");
+      return first.fold(String::valueOf, error -> error).equals("1")
+        && second.fold(String::valueOf, error -> error).equals("2");
+    });
+
     // Test whether mapping a failure just propagates it.
     tester.run(() -> {
       final Result<Integer, Integer> first  = failure(1);
@@ -250,4 +361,23 @@ public sealed interface Result<Value, Error> {
         && second.value().equals(String.valueOf(first.value()));
     });
   }
+
+  /**
+   * Runs all the benchmarks for {@link Result}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  static void benchmark(final Bencher bencher) {
+    // Benchmark combining many successful results.
+    final var successes = new ArrayList<Result<Integer, Integer>>();
+    for (var i = 0; i < 1000; i++) successes.add(success(i));
+    bencher.run("Result.combine 1000 successes", () -> combine(successes,
+      List::size, List::size));
+
+    // Benchmark combining many results with a failure at the start.
+    final var failures = new ArrayList<Result<Integer, Integer>>(successes);
+    failures.set(0, failure(0));
+    bencher.run("Result.combine 1000 with a failure", () -> combine(failures,
+      List::size, List::size));
+  }
 }
@@ -1,13 +1,54 @@
 package rainfall.utility;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
- * Runs and reports unit tests. Measures time taken by the tests.
+ * Runs and reports unit tests. Measures time taken by the tests, and reports
+ * the percentiles of the durations and the slowest tests at the end.
+ *
+ * <p>
+ * Suites of tests can be run concurrently in a pool, where the tests in a
+ * suite still run in order. Thus, the tests of a suite can depend on each
+ * other, but the suites must be independent.
  *
  * @author calestialgem
  */
 public class Tester {
+  /**
+   * Longest time a unit test can take before it is reported, in milliseconds.
+   */
+  private static final double MAX_ACCEPTABLE_DURATION = 5;
+
+  /**
+   * Number of the slowest tests that are reported.
+   */
+  private static final int SLOWEST_COUNT = 3;
+
+  /**
+   * Finds the callers of {@link #run(BooleanSupplier)}, which only walks the
+   * frames up to the caller instead of capturing the whole stack.
+   */
+  private static final StackWalker WALKER = StackWalker.getInstance();
+
+  /**
+   * Pool that runs the suites concurrently, or null if the suites are run in
+   * the current thread.
+   */
+  private final ForkJoinPool pool;
+
   /**
    * Time of creation in milliseconds. User for measuring the total elapsed
    * time.
@@ -17,22 +58,65 @@ public class Tester {
   /**
    * Number of unit tests that were run.
    */
-  private int runCount;
+  private final AtomicInteger runCount;
 
   /**
    * Number of unit tests that failed.
    */
-  private int failedCount;
+  private final AtomicInteger failedCount;
+
+  /**
+   * Measurements of the unit tests that were run.
+   */
+  private final ConcurrentLinkedQueue<Measurement> measurements;
+
+  /**
+   * Duration of a unit test.
+   *
+   * @param  caller   Source file and line of the unit test.
+   * @param  duration Time the unit test took in milliseconds.
+   * @author          calestialgem
+   */
+  private record Measurement(String caller, double duration) {}
 
   /**
-   * Constructs a clean tester, which immediately starts measuring the time.
-   * Thus, it should be used to run all the tests that would be run just after
-   * creation.
+   * Constructs a clean tester that runs the suites in the current thread,
+   * which immediately starts measuring the time. Thus, it should be used to
+   * run all the tests that would be run just after creation.
    */
-  public Tester() {
-    runCount    = 0;
-    failedCount = 0;
-    startTime   = currentMilliseconds();
+  public Tester() { this(null); }
+
+  /**
+   * Constructs a clean tester that runs the suites concurrently, which
+   * immediately starts measuring the time.
+   *
+   * @param pool Pool that runs the suites, or null for running them in the
+   *               current thread.
+   */
+  public Tester(final ForkJoinPool pool) {
+    this.pool    = pool;
+    runCount     = new AtomicInteger();
+    failedCount  = new AtomicInteger();
+    measurements = new ConcurrentLinkedQueue<>();
+    startTime    = currentMilliseconds();
+  }
+
+  /**
+   * Runs the given suites, which are run concurrently if the tester has a
+   * pool. Returns after all the suites finish.
+   *
+   * @param suites Run suites, which are the {@code test} methods of the
+   *                 components.
+   */
+  public void suites(final List<Consumer<Tester>> suites) {
+    if (pool == null) {
+      for (final var suite : suites) suite.accept(this);
+      return;
+    }
+    final var tasks = new ArrayList<ForkJoinTask<?>>(suites.size());
+    for (final var suite : suites)
+      tasks.add(ForkJoinTask.adapt(() -> suite.accept(this)));
+    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
   }
 
   /**
@@ -42,22 +126,24 @@ public class Tester {
    */
   public void run(final BooleanSupplier test) {
     // Count the run.
-    runCount++;
+    runCount.incrementAndGet();
 
     // Run the test, while measuring the time.
     final var unitStartTime = currentMilliseconds();
     final var result        = test.getAsBoolean();
     final var duration      = elapsedMilliseconds(unitStartTime);
+    final var caller        = WALKER.walk(frames -> frames.skip(1)
+      .map(frame -> frame.getFileName() + ":" + frame.getLineNumber())
+      .findFirst().orElse("?"));
+    measurements.add(new Measurement(caller, duration));
 
     // Return if it passed in an acceptable time.
-    final var maxAcceptableDuration = 5.0;
-    if (result && duration <= maxAcceptableDuration) return;
+    if (result && duration <= MAX_ACCEPTABLE_DURATION) return;
 
     // Count the failed test and report.
-    if (!result) failedCount++;
-    final var caller = Thread.currentThread().getStackTrace()[2];
-    System.out.printf("[%s] %s:%d (%.3f ms)%n", result ? "TOO LONG" : "FAILED",
-      caller.getFileName(), caller.getLineNumber(), duration);
+    if (!result) failedCount.incrementAndGet();
+    System.out.printf("[%s] %s (%.3f ms)%n", result ? "TOO LONG" : "FAILED",
+      caller, duration);
   }
 
   /**
@@ -67,15 +153,76 @@ public class Tester {
    */
   public boolean report() {
     final var totalDuration = elapsedMilliseconds(startTime);
+    final var runs          = runCount.get();
+    final var failures      = failedCount.get();
+
+    // Report the percentiles of the durations, and the slowest tests.
+    final var sorted = new ArrayList<>(measurements);
+    sorted.sort(Comparator.comparingDouble(Measurement::duration));
+    if (!sorted.isEmpty()) {
+      System.out.printf("Durations: p50 %.3f ms, p90 %.3f ms, p99 %.3f ms,"
+        + " max %.3f ms%n", percentile(sorted, 50), percentile(sorted, 90),
+        percentile(sorted, 99), percentile(sorted, 100));
+      for (var i = 0; i < SLOWEST_COUNT && i < sorted.size(); i++) {
+        final var slow = sorted.get(sorted.size() - 1 - i);
+        System.out.printf("Slowest: %s (%.3f ms)%n", slow.caller(),
+          slow.duration());
+      }
+    }
 
-    if (runCount == 0) System.out.printf("There are no tests!");
+    if (runs == 0) System.out.printf("There are no tests!");
     else
-      if (failedCount == 0) System.out.printf("All %d tests passed.", runCount);
-      else
-        System.out.printf("%d/%d of the tests failed!", failedCount, runCount);
+      if (failures == 0) System.out.printf("All %d tests passed.", runs);
+      else System.out.printf("%d/%d of the tests failed!", failures, runs);
     System.out.printf(" (%.3f ms)%n", totalDuration);
 
-    return failedCount == 0;
+    return failures == 0;
+  }
+
+  /**
+   * Finds a percentile of the durations with the nearest-rank method.
+   *
+   * @param  sorted     Measurements sorted by their durations, which are not
+   *                      empty.
+   * @param  percentile Found percentile, which is between 0 and 100.
+   * @return            Duration that the given percent of the measurements
+   *                      are not longer than.
+   */
+  private static double percentile(final List<Measurement> sorted,
+    final int percentile) {
+    final var rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+    return sorted.get(Math.max(rank, 1) - 1).duration();
+  }
+
+  /**
+   * Runs a test in a temporary directory that contains the given files, which
+   * is deleted afterwards.
+   *
+   * @param  files Contents of the created files mapped to their relative
+   *                 paths.
+   * @param  test  Test that is given the temporary directory.
+   * @return       Whether the test passed.
+   */
+  public static boolean withFiles(final Map<String, String> files,
+    final Predicate<Path> test) {
+    try {
+      final var directory = Files.createTempDirectory("rainfall");
+      try {
+        for (final var file : files.entrySet()) {
+          final var path = directory.resolve(file.getKey());
+          Files.createDirectories(path.getParent());
+          Files.writeString(path, file.getValue());
+        }
+        return test.test(directory);
+      } finally {
+        try (var stream = Files.walk(directory)) {
+          for (final var path : stream.sorted(Comparator.reverseOrder())
+            .toList()) Files.delete(path);
+        }
+      }
+    } catch (IOException exception) {
+      return false;
+    }
   }
 
   /**
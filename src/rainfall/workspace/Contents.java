@@ -0,0 +1,216 @@
+package rainfall.workspace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+
+/**
+ * Bytes in a source file. The file is read to the heap once; thus, the tokens
+ * and the trees that keep the contents see the bytes as they were when the
+ * file was read, even if the file is modified or removed later.
+ *
+ * <p>
+ * Sources are not mapped to the memory. A mapping shows the writes to the
+ * file after it was mapped, which would make a kept tree disagree with its
+ * bytes, and it keeps the file locked on Windows until it is collected,
+ * which would stop an editor from saving the sources a daemon has seen. The
+ * bytes are still never decoded to strings; the lexer and the names work on
+ * the buffer directly.
+ *
+ * @author calestialgem
+ */
+public final class Contents {
+  /**
+   * Path to the file.
+   */
+  public final Path path;
+
+  /**
+   * Modification time of the file right before it was read, or null if the
+   * bytes are not read from a file. A file that is modified while it is read
+   * has a later modification time; thus, the bytes are never older than it.
+   */
+  public final FileTime modified;
+
+  /**
+   * Read-only buffer of the bytes in the heap.
+   */
+  private final ByteBuffer bytes;
+
+  /**
+   * Reads the given file to the heap.
+   *
+   * @param  path Path to the read file.
+   * @return      Contents of the file, or error message.
+   */
+  public static Result<Contents, String> read(final Path path) {
+    final FileTime modified;
+    try {
+      modified = Files.getLastModifiedTime(path);
+    } catch (IOException exception) {
+      return Result.failure("Could not read the source `%s`!".formatted(path));
+    }
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final var size = channel.size();
+      if (size > Integer.MAX_VALUE) return Result
+        .failure("Source `%s` is too big to be read!".formatted(path));
+
+      // Read up to the size at the time of opening; a file that is shrunk
+      // while it is read ends early.
+      final var bytes = ByteBuffer.allocate((int) size);
+      while (bytes.hasRemaining() && channel.read(bytes) >= 0) {}
+      return Result.success(new Contents(path, modified,
+        bytes.flip().slice().asReadOnlyBuffer()));
+    } catch (IOException exception) {
+      return Result.failure("Could not read the source `%s`!".formatted(path));
+    }
+  }
+
+  /**
+   * Wraps bytes that are already in the heap, like the ones that are created
+   * by the compiler instead of being read from a file.
+   *
+   * @param  path  Path the bytes would be at if they were in a file.
+   * @param  bytes Wrapped bytes.
+   * @return       Contents with the given bytes.
+   */
+  public static Contents wrap(final Path path, final byte[] bytes) {
+    return new Contents(path, null, ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+  }
+
+  /**
+   * Constructs contents.
+   *
+   * @param path     Path to the file.
+   * @param modified Modification time of the file before it was read.
+   * @param bytes    Read-only buffer of the bytes in the heap.
+   */
+  private Contents(final Path path, final FileTime modified,
+    final ByteBuffer bytes) {
+    this.path     = path;
+    this.modified = modified;
+    this.bytes    = bytes;
+  }
+
+  /**
+   * @return Number of bytes in the file.
+   */
+  public int size() { return bytes.limit(); }
+
+  /**
+   * @param  index Index of the byte.
+   * @return       Byte at the given index.
+   */
+  public byte at(final int index) { return bytes.get(index); }
+
+  /**
+   * Views a range of the bytes without copying them.
+   *
+   * @param  start  Index of the first byte in the range.
+   * @param  length Number of bytes in the range.
+   * @return        Read-only buffer that shares the bytes in the range.
+   */
+  public ByteBuffer slice(final int start, final int length) {
+    return bytes.slice(start, length);
+  }
+
+  /**
+   * Copies a range of the bytes to the position of a buffer, which does not
+   * create a view like {@link #slice(int, int)}.
+   *
+   * @param start  Index of the first byte in the range.
+   * @param length Number of bytes in the range.
+   * @param target Buffer the bytes are copied to, whose position is advanced
+   *                 past the copied bytes.
+   */
+  public void copy(final int start, final int length, final ByteBuffer target) {
+    target.put(target.position(), bytes, start, length);
+    target.position(target.position() + length);
+  }
+
+  /**
+   * Finds the line and column of a byte by counting the lines before it.
+   * Should only be used when reporting a diagnostic.
+   *
+   * @param  index Index of the located byte.
+   * @return       Location of the byte as path, line and column; which are
+   *                 separated by colons.
+   */
+  public String locate(final int index) {
+    var line      = 1;
+    var lineStart = 0;
+    for (var i = 0; i < index; i++) if (at(i) == '\n') {
+      line++;
+      lineStart = i + 1;
+    }
+    return "%s:%d:%d".formatted(path, line, index - lineStart + 1);
+  }
+
+  /**
+   * Decodes a range of the bytes as text, which copies them. Should only be
+   * used when a string is needed, like reporting a diagnostic.
+   *
+   * @param  start  Index of the first byte in the range.
+   * @param  length Number of bytes in the range.
+   * @return        Decoded text.
+   */
+  public String text(final int start, final int length) {
+    return StandardCharsets.UTF_8.decode(slice(start, length)).toString();
+  }
+
+  /**
+   * Runs all the unit tests for {@link Contents}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether a missing file is checked.
+    tester.run(() -> read(Path.of("Missing.tr")).isFailure());
+
+    // Test whether an empty file is read.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", ""), directory -> {
+      final var contents = read(directory.resolve("A.tr"));
+      return contents.isSuccess() && contents.value().size() == 0;
+    }));
+
+    // Test whether wrapped bytes are read correctly.
+    tester.run(() -> {
+      final var contents = wrap(Path.of("A.tr"), new byte[] { 'a', 'b' });
+      return contents.size() == 2 && contents.at(1) == 'b';
+    });
+
+    // Test whether a byte is located correctly.
+    tester.run(() -> wrap(Path.of("A.tr"), "a\nbc".getBytes()).locate(3)
+      .equals("%s:2:2".formatted(Path.of("A.tr"))));
+
+    // Test whether the bytes are read correctly.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "abc"), directory -> {
+      final var contents = read(directory.resolve("A.tr"));
+      return contents.isSuccess() && contents.value().size() == 3
+        && contents.value().at(1) == 'b'
+        && contents.value().slice(1, 2).remaining() == 2
+        && contents.value().text(1, 2).equals("bc");
+    }));
+
+    // Test whether the bytes stay the same after the file is modified.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "abc"), directory -> {
+      final var file     = directory.resolve("A.tr");
+      final var contents = read(file);
+      try {
+        Files.writeString(file, "xyz");
+      } catch (IOException exception) {
+        return false;
+      }
+      return contents.isSuccess() && contents.value().text(0, 3).equals("abc");
+    }));
+  }
+}
@@ -0,0 +1,506 @@
+package rainfall.workspace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import rainfall.utility.Bencher;
+import rainfall.utility.Box;
+import rainfall.utility.Events;
+import rainfall.utility.Metrics;
+import rainfall.utility.Result;
+import rainfall.utility.Tester;
+
+/**
+ * Loads a workspace from a directory. Every module directory and every source
+ * file is loaded in a separate fork-join task; thus, the directory tree is
+ * walked concurrently.
+ *
+ * @param  <Model> Type of the model compiler constructs for the loaded
+ *                   sources.
+ * @author         calestialgem
+ */
+public final class Loader<Model> {
+  /**
+   * Extension of the Thrice source files.
+   */
+  public static final String EXTENSION = ".tr";
+
+  /**
+   * Function that constructs the model of a source from its contents.
+   */
+  private final Function<Contents, Result<Model, String>> modeler;
+
+  /**
+   * Number of bytes in the loaded sources.
+   */
+  private final LongAdder bytes;
+
+  /**
+   * Loads all the packages in the given directory.
+   *
+   * @param  <Model>   Type of the model compiler constructs for the loaded
+   *                     sources.
+   * @param  pool      Pool that runs the loading tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  modeler   Function that constructs the model of a source from its
+   *                     contents.
+   * @return           Loaded workspace, or error message.
+   */
+  public static <Model> Result<Workspace<Model>, String> load(
+    final ForkJoinPool pool, final Path directory,
+    final Function<Contents, Result<Model, String>> modeler) {
+    final var loader = new Loader<>(modeler);
+    return loader.scan(pool, directory, () -> loader.workspace(directory));
+  }
+
+  /**
+   * Finds the names of the packages in the given directory without loading
+   * them.
+   *
+   * @param  directory Path to the workspace directory.
+   * @return           Names of the packages sorted by their paths, or error
+   *                     message.
+   */
+  public static Result<List<PhysicalName>, String> names(
+    final Path directory) {
+    final var listing = list(directory);
+    if (listing.isFailure()) return listing.propagate();
+    final var names = new ArrayList<PhysicalName>();
+    for (final var source : listing.value().sources()) names.add(source.name());
+    for (final var module : listing.value().modules()) names.add(module.name());
+    return Result.success(names);
+  }
+
+  /**
+   * Loads the packages with the given names in the given directory, without
+   * loading the other packages. Used for updating a workspace after some of
+   * its packages change.
+   *
+   * @param  <Model>   Type of the model compiler constructs for the loaded
+   *                     sources.
+   * @param  pool      Pool that runs the loading tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  names     Names of the loaded packages.
+   * @param  modeler   Function that constructs the model of a source from its
+   *                     contents.
+   * @return           Loaded packages, or error messages, mapped to their
+   *                     names. Packages that do not exist are empty.
+   */
+  public static <Model> Map<PhysicalName, Result<Box<Package<Model>>, String>>
+    reload(final ForkJoinPool pool, final Path directory,
+      final Collection<PhysicalName> names,
+      final Function<Contents, Result<Model, String>> modeler) {
+    final var loader = new Loader<>(modeler);
+    return loader.scan(pool, directory, () -> {
+      final var tasks = new HashMap<PhysicalName,
+        ForkJoinTask<Result<Box<Package<Model>>, String>>>();
+      for (final var name : names) tasks.put(name,
+        ForkJoinTask.adapt(() -> loader.entry(directory, name)).fork());
+      final var loaded =
+        new HashMap<PhysicalName, Result<Box<Package<Model>>, String>>();
+      tasks.forEach((name, task) -> loaded.put(name, task.join()));
+      return loaded;
+    });
+  }
+
+  /**
+   * Constructs a loader.
+   *
+   * @param modeler Function that constructs the model of a source from its
+   *                  contents.
+   */
+  private Loader(final Function<Contents, Result<Model, String>> modeler) {
+    this.modeler = modeler;
+    bytes        = new LongAdder();
+  }
+
+  /**
+   * Runs a loading task in the given pool, and measures it.
+   *
+   * @param  <Loaded>  Type of the loaded packages.
+   * @param  pool      Pool that runs the loading tasks.
+   * @param  directory Path to the workspace directory.
+   * @param  task      Task that loads the packages.
+   * @return           Loaded packages.
+   */
+  private <Loaded> Loaded scan(final ForkJoinPool pool, final Path directory,
+    final Callable<Loaded> task) {
+    return Metrics.wrap("load", directory, () -> {
+      final var event = new Events.Scan();
+      event.begin();
+      final var loaded = pool.invoke(ForkJoinTask.adapt(task));
+      event.finish(directory, bytes.sum());
+      return loaded;
+    });
+  }
+
+  /**
+   * Loads the workspace in the given directory. Must be called from a task
+   * that runs in a fork-join pool.
+   *
+   * @param  directory Path to the workspace directory.
+   * @return           Loaded workspace, or error message.
+   */
+  private Result<Workspace<Model>, String> workspace(final Path directory) {
+    final var listing = list(directory);
+    if (listing.isFailure()) return listing.propagate();
+    final var ambiguous = ambiguous(directory, listing.value(), "Package");
+    if (ambiguous.isFailure()) return ambiguous.propagate();
+
+    // Fork the sources and the modules together, then join them.
+    final var files       = fork(listing.value().sources(), this::source);
+    final var directories = fork(listing.value().modules(), this::module);
+    final var sources     = join(listing.value().sources(), files);
+    final var modules     = join(listing.value().modules(), directories);
+    if (sources.isFailure() || modules.isFailure())
+      return Result.failure(errors(sources, modules));
+
+    // Merge the sources and modules as packages.
+    final var packages = new HashMap<PhysicalName, Package<Model>>();
+    sources.value().forEach(
+      (name, source) -> packages.put(name, new Package.File<>(source)));
+    modules.value().forEach(
+      (name, module) -> packages.put(name, new Package.Directory<>(module)));
+    return Result.success(new Workspace<>(Map.copyOf(packages)));
+  }
+
+  /**
+   * Loads the package with the given name in the given directory.
+   *
+   * @param  directory Path to the workspace directory.
+   * @param  name      Name of the package.
+   * @return           Loaded package, nothing if there is not a package with
+   *                     the name, or error message.
+   */
+  private Result<Box<Package<Model>>, String> entry(final Path directory,
+    final PhysicalName name) {
+    final var file      = directory.resolve(name.value + EXTENSION);
+    final var module    = directory.resolve(name.value);
+    final var isFile    = Files.isRegularFile(file);
+    final var isModule  = Files.isDirectory(module);
+    if (isFile && isModule) return Result.failure(
+      "Package `%s` in `%s` is both a file and a directory!"
+        .formatted(name.value, directory));
+    if (isFile) return source(file, name)
+      .map(source -> Box.<Package<Model>>full(new Package.File<>(source)));
+    if (isModule) return module(module, name).map(
+      loaded -> Box.<Package<Model>>full(new Package.Directory<>(loaded)));
+    return Result.success(Box.empty());
+  }
+
+  /**
+   * Loads the module in the given directory.
+   *
+   * @param  directory Path to the module directory.
+   * @param  name      Name of the module.
+   * @return           Loaded module, or error message.
+   */
+  private Result<Module<Model>, String> module(final Path directory,
+    final PhysicalName name) {
+    final var listing = list(directory);
+    if (listing.isFailure()) return listing.propagate();
+    final var ambiguous = ambiguous(directory, listing.value(), "Module");
+    if (ambiguous.isFailure()) return ambiguous.propagate();
+
+    // Fork the sources and the submodules together, then join them.
+    final var files       = fork(listing.value().sources(), this::source);
+    final var directories = fork(listing.value().modules(), this::module);
+    final var sources     = join(listing.value().sources(), files);
+    final var submodules  = join(listing.value().modules(), directories);
+    if (sources.isFailure() || submodules.isFailure())
+      return Result.failure(errors(sources, submodules));
+
+    return Result.success(new Module<>(name, Map.copyOf(sources.value()),
+      Map.copyOf(submodules.value())));
+  }
+
+  /**
+   * Loads the source in the given file.
+   *
+   * @param  file Path to the source file.
+   * @param  name Name of the source.
+   * @return      Loaded source, or error message.
+   */
+  private Result<Source<Model>, String> source(final Path file,
+    final PhysicalName name) {
+    return Contents.read(file).flatMap(contents -> {
+      Metrics.count("files", 1);
+      Metrics.count("bytes", contents.size());
+      bytes.add(contents.size());
+      return modeler.apply(contents);
+    }).map(model -> new Source<>(name, file, model));
+  }
+
+  /**
+   * Checks whether a name is both used by a source file and a module
+   * directory in the same directory.
+   *
+   * @param  directory Listed directory.
+   * @param  listing   Sources and modules directly under the directory.
+   * @param  kind      Kind of the entries in the directory, which is used in
+   *                     the error message.
+   * @return           Success, or error message.
+   */
+  private static Result<Void, String> ambiguous(final Path directory,
+    final Listing listing, final String kind) {
+    final var names = new HashSet<PhysicalName>();
+    for (final var source : listing.sources()) names.add(source.name());
+    for (final var module : listing.modules())
+      if (names.contains(module.name())) return Result.failure(
+        "%s `%s` in `%s` is both a file and a directory!".formatted(kind,
+          module.name().value, directory));
+    return Result.success();
+  }
+
+  /**
+   * Starts loading the given entries asynchronously.
+   *
+   * @param  <Loaded> Type of the loaded entries.
+   * @param  entries  Loaded entries.
+   * @param  loader   Function that loads an entry.
+   * @return          Tasks that load the entries, in the order of the entries.
+   */
+  private static <Loaded> List<ForkJoinTask<Result<Loaded, String>>> fork(
+    final List<Entry> entries,
+    final BiFunction<Path, PhysicalName, Result<Loaded, String>> loader) {
+    final var tasks =
+      new ArrayList<ForkJoinTask<Result<Loaded, String>>>(entries.size());
+    for (final var entry : entries) tasks.add(ForkJoinTask
+      .adapt(() -> loader.apply(entry.path(), entry.name())).fork());
+    return tasks;
+  }
+
+  /**
+   * Waits for the given tasks and maps their results to the names of the
+   * entries.
+   *
+   * @param  <Loaded> Type of the loaded entries.
+   * @param  entries  Loaded entries.
+   * @param  tasks    Tasks that load the entries, in the order of the entries.
+   * @return          Loaded entries mapped to their names, or error message.
+   */
+  private static <Loaded> Result<Map<PhysicalName, Loaded>, String> join(
+    final List<Entry> entries,
+    final List<ForkJoinTask<Result<Loaded, String>>> tasks) {
+    // Join in the order of the entries, which keeps the errors sorted.
+    final var results = new ArrayList<Result<Loaded, String>>(tasks.size());
+    for (final var task : tasks) results.add(task.join());
+
+    return Result.combine(results, values -> {
+      final var loaded = new HashMap<PhysicalName, Loaded>();
+      for (var i = 0; i < values.size(); i++)
+        loaded.put(entries.get(i).name(), values.get(i));
+      return loaded;
+    }, errors -> String.join(System.lineSeparator(), errors));
+  }
+
+  /**
+   * Concatenates the errors of the given results.
+   *
+   * @param  first  First result, which is reported first if it is a failure.
+   * @param  second Second result, which is reported second if it is a failure.
+   * @return        Concatenated error messages.
+   */
+  private static String errors(final Result<?, String> first,
+    final Result<?, String> second) {
+    if (first.isSuccess()) return second.error();
+    if (second.isSuccess()) return first.error();
+    return first.error() + System.lineSeparator() + second.error();
+  }
+
+  /**
+   * Lists the sources and modules directly under the given directory. Files
+   * without the source extension, and directories that do not have valid
+   * names are ignored.
+   *
+   * @param  directory Listed directory.
+   * @return           Listed sources and modules sorted by their paths, or
+   *                     error message.
+   */
+  private static Result<Listing, String> list(final Path directory) {
+    final List<Path> paths;
+    try (var stream = Files.list(directory)) {
+      paths = stream.sorted(Comparator.naturalOrder()).toList();
+    } catch (IOException | UncheckedIOException exception) {
+      return Result.failure("Could not list the directory `%s`!"
+        .formatted(directory));
+    }
+
+    final var sources = new ArrayList<Entry>();
+    final var modules = new ArrayList<Entry>();
+    for (final var path : paths) {
+      final var fileName = path.getFileName().toString();
+
+      // Directories that are not named like modules are not a part of the
+      // workspace; for example, the build outputs.
+      if (Files.isDirectory(path)) {
+        final var name = PhysicalName.of(fileName);
+        if (name.isSuccess()) modules.add(new Entry(path, name.value()));
+        continue;
+      }
+
+      // Source files must be named correctly.
+      if (!fileName.endsWith(EXTENSION) || !Files.isRegularFile(path))
+        continue;
+      final var name = PhysicalName
+        .of(fileName.substring(0, fileName.length() - EXTENSION.length()));
+      if (name.isFailure()) return Result
+        .failure("Invalid name for the source `%s`! %s".formatted(path,
+          name.error()));
+      sources.add(new Entry(path, name.value()));
+    }
+
+    return Result.success(new Listing(sources, modules));
+  }
+
+  /**
+   * File or directory that can be loaded.
+   *
+   * @param  path Path to the entry.
+   * @param  name Name of the entry.
+   * @author      calestialgem
+   */
+  private record Entry(Path path, PhysicalName name) {}
+
+  /**
+   * Entries directly under a directory.
+   *
+   * @param  sources Source files.
+   * @param  modules Module directories.
+   * @author         calestialgem
+   */
+  private record Listing(List<Entry> sources, List<Entry> modules) {}
+
+  /**
+   * Runs all the unit tests for {@link Loader}.
+   *
+   * @param tester Used unit test runner.
+   */
+  public static void test(final Tester tester) {
+    // Test whether an empty workspace is loaded.
+    tester.run(() -> load(List.of(),
+      loaded -> loaded.isSuccess() && loaded.value().packages().isEmpty()));
+
+    // Test whether a missing workspace directory is checked.
+    tester.run(() -> load(ForkJoinPool.commonPool(),
+      Path.of("Missing", "Workspace"), contents -> Result.success(null))
+        .isFailure());
+
+    // Test whether a source file is loaded as a package.
+    tester.run(() -> load(List.of("A.tr"),
+      loaded -> loaded.isSuccess() && loaded.value().packages().size() == 1
+        && loaded.value().packages().values().iterator()
+          .next() instanceof Package.File));
+
+    // Test whether a module directory is loaded as a package.
+    tester.run(() -> load(List.of("A/B.tr", "A/C/D.tr"), loaded -> {
+      if (loaded.isFailure() || loaded.value().packages().size() != 1)
+        return false;
+      final var loadedPackage =
+        loaded.value().packages().values().iterator().next();
+      if (!(loadedPackage instanceof Package.Directory<Void> directory))
+        return false;
+      final var module = directory.contents();
+      return module.sources().size() == 1 && module.submodules().size() == 1;
+    }));
+
+    // Test whether files without the source extension are ignored.
+    tester.run(() -> load(List.of("A.txt"),
+      loaded -> loaded.isSuccess() && loaded.value().packages().isEmpty()));
+
+    // Test whether directories with invalid names are ignored.
+    tester.run(() -> load(List.of("a/B.tr"),
+      loaded -> loaded.isSuccess() && loaded.value().packages().isEmpty()));
+
+    // Test whether source names are checked.
+    tester.run(() -> load(List.of("a.tr"), Result::isFailure));
+
+    // Test whether a package that is both a file and a directory is checked.
+    tester.run(() -> load(List.of("A.tr", "A/B.tr"), Result::isFailure));
+
+    // Test whether a module that is both a file and a directory is checked.
+    tester.run(() -> load(List.of("A/B.tr", "A/B/C.tr"), Result::isFailure));
+
+    // Test whether the errors from the modeler are reported.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", ""),
+      directory -> load(ForkJoinPool.commonPool(), directory,
+        contents -> Result.failure("")).isFailure()));
+
+    // Test whether the names of the packages are found.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "", "B/C.tr", ""),
+      directory -> names(directory).value()
+        .equals(List.of(PhysicalName.of("A").value(),
+          PhysicalName.of("B").value()))));
+
+    // Test whether only the given packages are loaded again.
+    tester.run(() -> Tester.withFiles(
+      Map.of("A.tr", "", "B/C.tr", "", "D.tr", ""), directory -> {
+        final var loaded = reload(ForkJoinPool.commonPool(), directory,
+          List.of(PhysicalName.of("B").value(), PhysicalName.of("E").value()),
+          Result::success);
+        return loaded.size() == 2
+          && loaded.get(PhysicalName.of("B").value()).value()
+            .get() instanceof Package.Directory
+          && loaded.get(PhysicalName.of("E").value()).value().isEmpty();
+      }));
+
+    // Test whether the contents of the sources are given to the modeler.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "abc"), directory -> {
+      final var loaded = load(ForkJoinPool.commonPool(), directory,
+        contents -> Result.success(contents.size()));
+      return loaded.isSuccess() && loaded.value().packages().values().iterator()
+        .next() instanceof Package.File<Integer> file
+        && file.contents().model() == 3;
+    }));
+  }
+
+  /**
+   * Loads a workspace that is created with the given files in a temporary
+   * directory.
+   *
+   * @param  files   Relative paths of the created files.
+   * @param  checker Predicate that checks the loaded workspace.
+   * @return         Whether the loaded workspace was correct.
+   */
+  private static boolean load(final List<String> files,
+    final Predicate<Result<Workspace<Void>, String>> checker) {
+    final var contents = new HashMap<String, String>();
+    for (final var file : files) contents.put(file, "");
+    return Tester.withFiles(contents, directory -> checker.test(load(
+      ForkJoinPool.commonPool(), directory, loaded -> Result.success(null))));
+  }
+
+  /**
+   * Runs all the benchmarks for {@link Loader}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark loading a workspace with 100 module packages that each have
+    // 10 sources.
+    final var files = new HashMap<String, String>();
+    for (var i = 0; i < 100; i++)
+      for (var j = 0; j < 10; j++) files.put("P%d/S%d.tr".formatted(i, j), "");
+    Tester.withFiles(files, directory -> {
+      bencher.run("Loader.load 100 packages with 10 sources",
+        () -> load(ForkJoinPool.commonPool(), directory, Result::success));
+      return true;
+    });
+  }
+}
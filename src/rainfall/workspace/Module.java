@@ -1,7 +1,13 @@
 package rainfall.workspace;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import rainfall.utility.Box;
+
 /**
  * Represents a Thrice module.
  *
@@ -18,4 +24,48 @@ import java.util.Map;
  */
 public record Module<Model>(PhysicalName name,
   Map<PhysicalName, Source<Model>> sources,
-  Map<PhysicalName, Module<Model>> submodules) {}
+  Map<PhysicalName, Module<Model>> submodules) {
+  /**
+   * @return Sources that are directly under the module or its submodules,
+   *           sorted by their paths.
+   */
+  public List<Source<Model>> descendants() {
+    final var descendants = new ArrayList<Source<Model>>(sources.values());
+    for (final var submodule : submodules.values())
+      descendants.addAll(submodule.descendants());
+    descendants.sort(Comparator.comparing(Source::path));
+    return descendants;
+  }
+
+  /**
+   * Replaces a source without changing the other sources and modules, which
+   * are shared with this module.
+   *
+   * @param  modules Names of the submodules that lead to the module that
+   *                   contains the source, in order.
+   * @param  patched Source that replaces the one with the same name.
+   * @return         Module with the replaced source, or nothing if the source
+   *                   or one of the submodules does not exist.
+   */
+  public Box<Module<Model>> patch(final List<PhysicalName> modules,
+    final Source<Model> patched) {
+    if (modules.isEmpty()) {
+      if (!sources.containsKey(patched.name())) return Box.empty();
+      final var patchedSources = new HashMap<>(sources);
+      patchedSources.put(patched.name(), patched);
+      return Box.full(
+        new Module<>(name, Map.copyOf(patchedSources), submodules));
+    }
+
+    // Patch the submodule and replace it.
+    final var submodule = submodules.get(modules.get(0));
+    if (submodule == null) return Box.empty();
+    final var patchedSubmodule =
+      submodule.patch(modules.subList(1, modules.size()), patched);
+    if (patchedSubmodule.isEmpty()) return Box.empty();
+    final var patchedSubmodules = new HashMap<>(submodules);
+    patchedSubmodules.put(submodule.name(), patchedSubmodule.get());
+    return Box
+      .full(new Module<>(name, sources, Map.copyOf(patchedSubmodules)));
+  }
+}
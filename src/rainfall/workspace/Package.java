@@ -1,5 +1,9 @@
 package rainfall.workspace;
 
+import java.util.List;
+
+import rainfall.utility.Box;
+
 /**
  * Represents a Thrice package.
  *
@@ -8,6 +12,25 @@ package rainfall.workspace;
  * @author         calestialgem
  */
 public sealed interface Package<Model> {
+  /**
+   * @return Sources that are contained by the package, sorted by their paths.
+   */
+  List<Source<Model>> sources();
+
+  /**
+   * Replaces a source without changing the other sources, which are shared
+   * with this package.
+   *
+   * @param  modules Names of the modules that lead to the module that
+   *                   contains the source, in order. Empty if the source is
+   *                   directly under the package.
+   * @param  patched Source that replaces the one with the same name.
+   * @return         Package with the replaced source, or nothing if the source
+   *                   does not exist.
+   */
+  Box<Package<Model>> patch(List<PhysicalName> modules,
+    Source<Model> patched);
+
   /**
    * Represents a Thrice package that is formed out of a source file.
    *
@@ -16,7 +39,18 @@ public sealed interface Package<Model> {
    * @param  contents Source that forms the package.
    * @author          calestialgem
    */
-  record File<Model>(Source<Model> contents) implements Package<Model> {}
+  record File<Model>(Source<Model> contents) implements Package<Model> {
+    @Override public List<Source<Model>> sources() {
+      return List.of(contents);
+    }
+
+    @Override public Box<Package<Model>> patch(
+      final List<PhysicalName> modules, final Source<Model> patched) {
+      if (!modules.isEmpty() || patched.name() != contents.name())
+        return Box.empty();
+      return Box.full(new File<>(patched));
+    }
+  }
 
   /**
    * Represents a Thrice package that is formed out of a module directory.
@@ -26,5 +60,16 @@ public sealed interface Package<Model> {
    * @param  contents Module that forms the package.
    * @author          calestialgem
    */
-  record Directory<Model>(Module<Model> contents) implements Package<Model> {}
+  record Directory<Model>(Module<Model> contents) implements Package<Model> {
+    @Override public List<Source<Model>> sources() {
+      return contents.descendants();
+    }
+
+    @Override public Box<Package<Model>> patch(
+      final List<PhysicalName> modules, final Source<Model> patched) {
+      final var module = contents.patch(modules, patched);
+      if (module.isEmpty()) return Box.empty();
+      return Box.full(new Directory<>(module.get()));
+    }
+  }
 }
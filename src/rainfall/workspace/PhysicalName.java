@@ -1,19 +1,82 @@
 package rainfall.workspace;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rainfall.utility.Bencher;
 import rainfall.utility.Result;
 import rainfall.utility.Tester;
 
 /**
- * Represents the name of a Thrice package, module, or source.
+ * Represents the name of a Thrice package, module, or source. Names are
+ * interned; thus, there is only one instance for a value, and names are
+ * compared by their references.
  *
  * @author calestialgem
  */
 public class PhysicalName {
+  /**
+   * Created names mapped to their values. Names are never removed because
+   * there are only as many of them as there are packages, modules and sources.
+   */
+  private static final ConcurrentHashMap<String, PhysicalName> INTERNED =
+    new ConcurrentHashMap<>();
+
+  /**
+   * Interned names in an open addressing table indexed by their hashes, which
+   * is used for finding a name from the bytes of a source without creating a
+   * string. Read without locking; a name that is not seen yet is found in
+   * {@link #INTERNED} instead. Replaced by a larger copy when it is half full.
+   */
+  private static volatile PhysicalName[] table = new PhysicalName[64];
+
+  /**
+   * Number of the names in the {@link #table}. Guarded by the lock of the
+   * class.
+   */
+  private static int tableSize;
+
+  /**
+   * Flag of the uppercase letters in the character classes.
+   */
+  private static final byte UPPERCASE = 1;
+
+  /**
+   * Flag of the lowercase letters in the character classes.
+   */
+  private static final byte LOWERCASE = 2;
+
+  /**
+   * Flag of the decimal digits in the character classes.
+   */
+  private static final byte DIGIT = 4;
+
+  /**
+   * Flags of the ASCII characters, which are looked up instead of comparing a
+   * character against the ranges of all the classes.
+   */
+  private static final byte[] CLASSES = new byte[128];
+
+  static {
+    for (var character = 0; character < CLASSES.length; character++) {
+      if (inRange(character, 'A', 'Z')) CLASSES[character] |= UPPERCASE;
+      if (inRange(character, 'a', 'z')) CLASSES[character] |= LOWERCASE;
+      if (inRange(character, '0', '9')) CLASSES[character] |= DIGIT;
+    }
+  }
+
   /**
    * Name's value as a string.
    */
   public final String value;
 
+  /**
+   * Hash of the value, which is calculated once.
+   */
+  private final int hash;
+
   /**
    * Create a name from a string.
    *
@@ -21,46 +84,158 @@ public class PhysicalName {
    * @return       Converted name, or error message.
    */
   public static Result<PhysicalName, String> of(final String value) {
+    // Return the existing name, which was already checked.
+    final var existing = INTERNED.get(value);
+    if (existing != null) return Result.success(existing);
+
     // Check whether there are any characters.
     if (value.isEmpty()) return Result.failure("Name cannot be empty!");
 
-    final var contents = value.getBytes();
-
-    // Check the initial character.
-    if (!isUppercase(contents[0])) return Result
+    // Check the characters in place without copying them.
+    if (!isInitial(value.charAt(0))) return Result
       .failure("Name must start with an uppercase English letter!");
+    for (var i = 1; i < value.length(); i++)
+      if (!isBody(value.charAt(i))) return Result.failure(
+        "Name must solely consist of English letters and decimal digits!");
 
-    // Check rest of the characters.
-    for (var character : contents) if (!isUppercase(character)
-      && !isLowercase(character) && !isDigit(character))
-      return Result.failure(
+    return Result.success(INTERNED.computeIfAbsent(value, PhysicalName::new));
+  }
+
+  /**
+   * Create a name from a range of the bytes in a source. The bytes are checked
+   * in place; thus, a string is only created for a valid name.
+   *
+   * @param  contents Contents of the source.
+   * @param  start    Index of the first byte of the name.
+   * @param  length   Number of bytes in the name.
+   * @return          Converted name, or error message.
+   */
+  public static Result<PhysicalName, String> of(final Contents contents,
+    final int start, final int length) {
+    // Find the existing name by comparing its value to the bytes. The hash is
+    // calculated like a string's, as valid names are solely ASCII.
+    var hash = 0;
+    for (var i = start; i < start + length; i++)
+      hash = 31 * hash + contents.at(i);
+    final var table = PhysicalName.table;
+    final var mask  = table.length - 1;
+    for (var i = hash & mask; table[i] != null; i = i + 1 & mask)
+      if (table[i].hash == hash && table[i].isSame(contents, start, length))
+        return Result.success(table[i]);
+
+    // Check whether there are any characters.
+    if (length == 0) return Result.failure("Name cannot be empty!");
+
+    // Check the bytes in place without copying them.
+    if (!isInitial(contents.at(start))) return Result
+      .failure("Name must start with an uppercase English letter!");
+    for (var i = start + 1; i < start + length; i++)
+      if (!isBody(contents.at(i))) return Result.failure(
         "Name must solely consist of English letters and decimal digits!");
 
-    return Result.success(new PhysicalName(value));
+    final var name = INTERNED
+      .computeIfAbsent(contents.text(start, length), PhysicalName::new);
+    insert(name);
+    return Result.success(name);
+  }
+
+  /**
+   * Adds a name to the {@link #table} unless it is already there.
+   *
+   * @param name Added name.
+   */
+  private static synchronized void insert(final PhysicalName name) {
+    var mask = table.length - 1;
+    for (var i = name.hash & mask; table[i] != null; i = i + 1 & mask)
+      if (table[i] == name) return;
+
+    // Grow the table before adding the name if it would be half full. Names
+    // only have final fields; thus, the readers either see a complete name
+    // or nothing.
+    if (2 * (tableSize + 1) > table.length) {
+      final var grown = new PhysicalName[2 * table.length];
+      mask = grown.length - 1;
+      for (final var existing : table) if (existing != null) {
+        var i = existing.hash & mask;
+        while (grown[i] != null) i = i + 1 & mask;
+        grown[i] = existing;
+      }
+      table = grown;
+    }
+    var i = name.hash & mask;
+    while (table[i] != null) i = i + 1 & mask;
+    table[i] = name;
+    tableSize++;
+  }
+
+  /**
+   * @param  contents Contents of a source.
+   * @param  start    Index of the first compared byte.
+   * @param  length   Number of the compared bytes.
+   * @return          Whether the value of the name is the same as the bytes.
+   */
+  private boolean isSame(final Contents contents, final int start,
+    final int length) {
+    if (value.length() != length) return false;
+    for (var i = 0; i < length; i++)
+      if (value.charAt(i) != contents.at(start + i)) return false;
+    return true;
+  }
+
+  /**
+   * @param  checked Character that is checked. Bytes are given as signed;
+   *                   thus, the ones above the ASCII range are negative.
+   * @return         Whether the given character can start a name.
+   */
+  public static boolean isInitial(final int checked) {
+    return isUppercase(checked);
+  }
+
+  /**
+   * @param  checked Character that is checked. Bytes are given as signed;
+   *                   thus, the ones above the ASCII range are negative.
+   * @return         Whether the given character can come after the initial in
+   *                   a name.
+   */
+  public static boolean isBody(final int checked) {
+    return is(checked, UPPERCASE | LOWERCASE | DIGIT);
   }
 
   /**
-   * @param  checked One byte long character that is checked.
+   * @param  checked Character that is checked.
    * @return         Whether the given character is an uppercase letter.
    */
-  private static boolean isUppercase(final byte checked) {
-    return inRange(checked, 'A', 'Z');
+  private static boolean isUppercase(final int checked) {
+    return is(checked, UPPERCASE);
   }
 
   /**
-   * @param  checked One byte long character that is checked.
+   * @param  checked Character that is checked.
    * @return         Whether the given character is a lowercase letter.
    */
-  private static boolean isLowercase(final byte checked) {
-    return inRange(checked, 'a', 'z');
+  private static boolean isLowercase(final int checked) {
+    return is(checked, LOWERCASE);
   }
 
   /**
-   * @param  checked One byte long character that is checked.
+   * @param  checked Character that is checked.
    * @return         Whether the given character is a decimal digit.
    */
-  private static boolean isDigit(final byte checked) {
-    return inRange(checked, '0', '9');
+  private static boolean isDigit(final int checked) {
+    return is(checked, DIGIT);
+  }
+
+  /**
+   * @param  checked Character that is checked.
+   * @param  flags   Flags of the character classes.
+   * @return         Whether the given character is in any of the given
+   *                   classes.
+   */
+  private static boolean is(final int checked, final int flags) {
+    // Characters outside the ASCII range, including negative bytes, are not
+    // in any of the classes.
+    return checked >= 0 && checked < CLASSES.length
+      && (CLASSES[checked] & flags) != 0;
   }
 
   /**
@@ -79,7 +254,14 @@ public class PhysicalName {
    *
    * @param value Value of the constructed name.
    */
-  private PhysicalName(final String value) { this.value = value; }
+  private PhysicalName(final String value) {
+    this.value = value;
+    hash       = value.hashCode();
+  }
+
+  @Override public boolean equals(final Object other) { return this == other; }
+  @Override public int hashCode() { return hash; }
+  @Override public String toString() { return value; }
 
   /**
    * Run all the unit tests for {@link PhysicalName}.
@@ -125,5 +307,79 @@ public class PhysicalName {
 
     // Test whether decimal digit in body is allowed.
     tester.run(() -> of("S0").isSuccess());
+
+    // Test whether characters outside the ASCII range are checked.
+    tester.run(() -> !isBody((byte) 0xC3) && !isBody('\u00C7'));
+
+    // Test whether non-ASCII names are checked.
+    tester.run(() -> of("S\u00C7").isFailure());
+
+    // Test whether a name is created from the bytes of a source.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "(Same)"), directory -> {
+      final var contents = Contents.read(directory.resolve("A.tr")).value();
+      final var name     = of(contents, 1, 4);
+      return name.isSuccess() && name.value() == of("Same").value();
+    }));
+
+    // Test whether the bytes of a source are checked.
+    tester.run(() -> Tester.withFiles(Map.of("A.tr", "(Same)"), directory -> {
+      final var contents = Contents.read(directory.resolve("A.tr")).value();
+      return of(contents, 0, 4).isFailure() && of(contents, 1, 0).isFailure();
+    }));
+
+    // Test whether a name is found from the bytes of different sources.
+    tester.run(() -> {
+      final var first  = Contents.wrap(Path.of("A.tr"), "(Found)".getBytes());
+      final var second = Contents.wrap(Path.of("B.tr"), "Found".getBytes());
+      return of(first, 1, 5).value() == of(second, 0, 5).value()
+        && of(second, 0, 5).value() == of("Found").value();
+    });
+
+    // Test whether the names with the same hash are told apart.
+    tester.run(() -> {
+      final var contents = Contents.wrap(Path.of("A.tr"), "AaBB".getBytes());
+      return of(contents, 0, 2).value() != of(contents, 2, 2).value()
+        && of(contents, 2, 2).value().value.equals("BB");
+    });
+
+    // Test whether the table of the names keeps all of them when it grows.
+    tester.run(() -> {
+      final var bytes = new StringBuilder();
+      for (var i = 0; i < 100; i++) bytes.append("Grown%03d".formatted(i));
+      final var contents =
+        Contents.wrap(Path.of("A.tr"), bytes.toString().getBytes());
+      final var names    = new ArrayList<PhysicalName>();
+      for (var i = 0; i < 100; i++) names.add(of(contents, 8 * i, 8).value());
+      for (var i = 0; i < 100; i++)
+        if (of(contents, 8 * i, 8).value() != names.get(i)) return false;
+      return true;
+    });
+
+    // Test whether names with the same value are the same instance.
+    tester.run(() -> of("Same").value() == of("Same").value());
+
+    // Test whether names with different values are not equal.
+    tester.run(() -> !of("Same").value().equals(of("Other").value()));
+
+    // Test whether the hash of a name is the hash of its value.
+    tester.run(() -> of("Same").value().hashCode() == "Same".hashCode());
+  }
+
+  /**
+   * Runs all the benchmarks for {@link PhysicalName}.
+   *
+   * @param bencher Used benchmark runner.
+   */
+  public static void benchmark(final Bencher bencher) {
+    // Benchmark creating a name that was created before.
+    bencher.run("PhysicalName.of interned", () -> of("PhysicalName"));
+
+    // Benchmark finding a name from the bytes of a source.
+    final var contents =
+      Contents.wrap(Path.of("A.tr"), "PhysicalName".getBytes());
+    bencher.run("PhysicalName.of bytes", () -> of(contents, 0, 12));
+
+    // Benchmark checking a name that is not valid.
+    bencher.run("PhysicalName.of invalid", () -> of("PhysicalName_"));
   }
 }